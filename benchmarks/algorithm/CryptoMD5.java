@@ -47,6 +47,7 @@
 package benchmarks.algorithm;
 
 import java.lang.System;
+import org.linaro.bench.IterationsAnnotation;
 
 public class CryptoMD5 {
   private static String TEXT;
@@ -258,6 +259,8 @@ public class CryptoMD5 {
     return hex;
   }
 
+  // TEXT is 16 copies of TEXT_FRAGMENT, 15824 characters of 8 bits.
+  @IterationsAnnotation(bytesPerInvocation = 15824)
   public void timeHexMD5(int iters) {
     for (int i = 0; i < iters; i++) {
       hexMD5(TEXT);
@@ -28,8 +28,13 @@ package benchmarks.algorithm;
 import java.lang.System;
 import java.util.ArrayList;
 import java.util.Arrays;
+import org.linaro.bench.ParamAnnotation;
 
 public class Sort {
+  // The number of elements of the sorted arrays.
+  @ParamAnnotation({"16", "128", "2048"})
+  public int size = 2048;
+
   public ArrayList<int[]> systemSortArraysToVerify = new ArrayList<int[]>();
   public ArrayList<int[]> bubbleSortArraysToVerify = new ArrayList<int[]>();
   public ArrayList<int[]> insertionSortArraysToVerify = new ArrayList<int[]>();
@@ -252,25 +257,24 @@ public class Sort {
   }
 
 
-  // CHECKSTYLE.OFF: LeftCurly
-  // CHECKSTYLE.OFF: RightCurly
-  // CHECKSTYLE.OFF: EmptyLineSeparator
-  public void timeBubbleSort____16(int iterations) { benchBubbleSort(   16, iterations); }
-  public void timeBubbleSort___128(int iterations) { benchBubbleSort(  128, iterations); }
-  public void timeBubbleSort__2048(int iterations) { benchBubbleSort( 2048, iterations); }
-  public void timeInsertionSort____16(int iterations) { benchInsertionSort(   16, iterations); }
-  public void timeInsertionSort___128(int iterations) { benchInsertionSort(  128, iterations); }
-  public void timeInsertionSort__2048(int iterations) { benchInsertionSort( 2048, iterations); }
-  public void timeMergeSort____16(int iterations) { benchMergeSort(   16, iterations); }
-  public void timeMergeSort___128(int iterations) { benchMergeSort(  128, iterations); }
-  public void timeMergeSort__2048(int iterations) { benchMergeSort( 2048, iterations); }
-  public void timeSystemSort____16(int iterations) { benchSystemSort(   16, iterations); }
-  public void timeSystemSort___128(int iterations) { benchSystemSort(  128, iterations); }
-  public void timeSystemSort__2048(int iterations) { benchSystemSort( 2048, iterations); }
-  // CHECKSTYLE.ON: EmptyLineSeparator
-  // CHECKSTYLE.ON: RightCurly
-  // CHECKSTYLE.ON: LeftCurly
+  public void timeBubbleSort(int iterations) {
+    benchBubbleSort(size, iterations);
+  }
+
+  public void timeInsertionSort(int iterations) {
+    benchInsertionSort(size, iterations);
+  }
+
+  public void timeMergeSort(int iterations) {
+    benchMergeSort(size, iterations);
+  }
+
+  public void timeSystemSort(int iterations) {
+    benchSystemSort(size, iterations);
+  }
+
 
+  private static final int[] SIZES = {16, 128, 2048};
 
   public static void main(String[] args) {
     int rc = 0;
@@ -278,51 +282,42 @@ public class Sort {
     long a;               // after
     Sort o = new Sort();  // object
 
-    // The number of iterations run were calibrated so that each benchmark runs in about one second.
+    // The number of iterations run for each size were calibrated so that each benchmark runs
+    // in about one second.
+    int[] bubbleSortIterations = {700000, 15500, 60};
+    int[] insertionSortIterations = {1450000, 40000, 170};
+    int[] mergeSortIterations = {110000, 12000, 600};
+    int[] systemSortIterations = {1200000, 100000, 6250};
 
     // CHECKSTYLE.OFF: LineLength
     // CHECKSTYLE.OFF: OneStatementPerLine
-    b = System.currentTimeMillis(); o.timeBubbleSort____16(700000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.BubbleSort____16: " + (a - b));
-    b = System.currentTimeMillis(); o.timeBubbleSort___128(15500); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.BubbleSort___128: " + (a - b));
-    b = System.currentTimeMillis(); o.timeBubbleSort__2048(60); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.BubbleSort__2048: " + (a - b));
+    for (int i = 0; i < SIZES.length; ++i) {
+      o.size = SIZES[i];
+      String suffix = "[size=" + o.size + "]: ";
+      b = System.currentTimeMillis(); o.timeBubbleSort(bubbleSortIterations[i]); a = System.currentTimeMillis();
+      System.out.println("benchmarks/algorithm/Sort.BubbleSort" + suffix + (a - b));
+      b = System.currentTimeMillis(); o.timeInsertionSort(insertionSortIterations[i]); a = System.currentTimeMillis();
+      System.out.println("benchmarks/algorithm/Sort.InsertionSort" + suffix + (a - b));
+      b = System.currentTimeMillis(); o.timeMergeSort(mergeSortIterations[i]); a = System.currentTimeMillis();
+      System.out.println("benchmarks/algorithm/Sort.MergeSort" + suffix + (a - b));
+      b = System.currentTimeMillis(); o.timeSystemSort(systemSortIterations[i]); a = System.currentTimeMillis();
+      System.out.println("benchmarks/algorithm/Sort.SystemSort" + suffix + (a - b));
+    }
+    // CHECKSTYLE.ON: OneStatementPerLine
+    // CHECKSTYLE.ON: LineLength
+
     if (!o.verifyBubbleSort()) {
       rc++;
     }
-
-    b = System.currentTimeMillis(); o.timeInsertionSort____16(1450000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.InsertionSort____16: " + (a - b));
-    b = System.currentTimeMillis(); o.timeInsertionSort___128(40000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.InsertionSort___128: " + (a - b));
-    b = System.currentTimeMillis(); o.timeInsertionSort__2048(170); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.InsertionSort__2048: " + (a - b));
     if (!o.verifyInsertionSort()) {
       rc++;
     }
-
-    b = System.currentTimeMillis(); o.timeMergeSort____16(110000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.MergeSort____16: " + (a - b));
-    b = System.currentTimeMillis(); o.timeMergeSort___128(12000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.MergeSort___128: " + (a - b));
-    b = System.currentTimeMillis(); o.timeMergeSort__2048(600); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.MergeSort__2048: " + (a - b));
     if (!o.verifyMergeSort()) {
       rc++;
     }
-
-    b = System.currentTimeMillis(); o.timeSystemSort____16(1200000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.SystemSort____16: " + (a - b));
-    b = System.currentTimeMillis(); o.timeSystemSort___128(100000); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.SystemSort___128: " + (a - b));
-    b = System.currentTimeMillis(); o.timeSystemSort__2048(6250); a = System.currentTimeMillis();
-    System.out.println("benchmarks/algorithm/Sort.SystemSort__2048: " + (a - b));
     if (!o.verifySystemSort()) {
       rc++;
     }
-    // CHECKSTYLE.ON: OneStatementPerLine
-    // CHECKSTYLE.ON: LineLength
 
     System.exit(rc);
   }
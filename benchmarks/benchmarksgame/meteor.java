@@ -22,6 +22,8 @@ package benchmarks.benchmarksgame;
 import java.util.ArrayList;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import org.linaro.bench.FixtureLevel;
+import org.linaro.bench.TeardownAnnotation;
 
 /**
  * First hack at a Java solver for the meteor puzzle - just the IBM developerWorks article algorithm
@@ -1396,6 +1398,8 @@ public class meteor {
         8)
   };
 
+  // Each iteration solves the puzzle from a cleared solution. The reset is not timed.
+  @TeardownAnnotation(FixtureLevel.ITERATION)
   public void resetMeteor() {
     for (int i = 0; i < 10; ++i) {
       solution[i] = new Entry();
@@ -1405,7 +1409,6 @@ public class meteor {
   public void timeMeteor(int iters) {
     for (int i = 0; i < iters; i++) {
       solve();
-      resetMeteor();
     }
   }
 
@@ -1429,6 +1432,7 @@ public class meteor {
     final long before = System.currentTimeMillis();
     puzzle.timeMeteor(1);
     final long after = System.currentTimeMillis();
+    puzzle.resetMeteor();
 
     if (!puzzle.verifyMeteor()) {
       rc++;
@@ -22,6 +22,8 @@ package benchmarks.benchmarksgame;
 import java.io.*;
 import java.util.*;
 import java.util.regex.*;
+import org.linaro.bench.FixtureLevel;
+import org.linaro.bench.SetupAnnotation;
 
 // CHECKSTYLE.OFF: TypeName
 public final class regexdna {
@@ -82,8 +84,13 @@ public final class regexdna {
     }
   }
 
-  public int old_main() throws IOException {
+  // Each iteration reads fastaStr from its start. The reset is not timed.
+  @SetupAnnotation(FixtureLevel.ITERATION)
+  public void resetStream() throws IOException {
     stream.reset();
+  }
+
+  public int old_main() throws IOException {
     StringBuilder sb = new StringBuilder(5100000);
 
     int charsRead;
@@ -139,6 +146,7 @@ public final class regexdna {
 
   public boolean verifyRegexDna() throws IOException {
     int expected = 27;
+    resetStream();
     int found = old_main();
 
     if (expected != found) {
@@ -153,7 +161,10 @@ public final class regexdna {
     regexdna obj = new regexdna();
 
     final long before = System.currentTimeMillis();
-    obj.timeRegexDna(10);
+    for (int count = 0; count < 10; count++) {
+      obj.resetStream();
+      obj.timeRegexDna(1);
+    }
     final long after = System.currentTimeMillis();
 
     if (!obj.verifyRegexDna()) {
@@ -21,6 +21,7 @@ import java.lang.StringBuilder;
 import java.lang.System;
 import java.lang.Thread;
 import java.util.Random;
+import org.linaro.bench.IterationsAnnotation;
 
 public class Base64 {
   private static Random rnd = new Random();
@@ -117,6 +118,7 @@ public class Base64 {
     return decoded;
   }
 
+  @IterationsAnnotation(operationsPerInvocation = NUM_Encodings)
   public void timeEncode(int iterations) {
     for (int i = 0; i < iterations; i++) {
       for (int j = 0; j < NUM_Encodings; j++) {
@@ -125,6 +127,8 @@ public class Base64 {
     }
   }
 
+  @IterationsAnnotation(operationsPerInvocation = NUM_Encodings,
+                        bytesPerInvocation = NUM_Encodings * ENC_Length)
   public void timeDecode(int iterations) {
     for (int i = 0; i < iterations; i++) {
       for (int j = 0; j < NUM_Encodings; j++) {
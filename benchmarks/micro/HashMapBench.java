@@ -59,6 +59,7 @@ package benchmarks.micro;
 
 import java.util.HashMap;
 import java.util.Map;
+import org.linaro.bench.IterationsAnnotation;
 
 public class HashMapBench {
 
@@ -72,6 +73,8 @@ public class HashMapBench {
 
   private Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 
+  // Each iteration does COUNT puts and 5 * COUNT gets.
+  @IterationsAnnotation(operationsPerInvocation = 6 * COUNT)
   public void timeTestHashMap(int iters) {
     for (int i = 0; i < iters; i++) {
       for (int j = 0; j < COUNT; j++) {
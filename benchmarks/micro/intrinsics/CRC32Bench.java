@@ -24,24 +24,31 @@ package benchmarks.micro.intrinsics;
 
 import java.util.Random;
 import java.util.zip.CRC32;
+import org.linaro.bench.IterationsAnnotation;
 
 public class CRC32Bench {
-  private byte []bytes = new byte[8192];
+  private static final int bytesSize = 8192;
+  private byte []bytes = new byte[bytesSize];
   private CRC32 crc32 = new CRC32();
   private static final int iterCount = 100;
   private static final int loopSize = 3000;
+  private static final int updateIntCount = loopSize * 230;
 
   public CRC32Bench() {
     Random rnd = new Random(0);
     rnd.nextBytes(bytes);
   }
 
+  @IterationsAnnotation(operationsPerInvocation = updateIntCount,
+                        bytesPerInvocation = updateIntCount)
   public void timeUpdateInt(int iterations) {
     for (int i = 0; i < iterations; i++) {
       benchUpdateInt();
     }
   }
 
+  @IterationsAnnotation(operationsPerInvocation = loopSize,
+                        bytesPerInvocation = loopSize * bytesSize)
   public void timeUpdateBytes(int iterations) {
     for (int i = 0; i < iterations; i++) {
       benchUpdateBytes();
@@ -49,9 +56,8 @@ public class CRC32Bench {
   }
 
   public void benchUpdateInt() {
-    int count = loopSize * 230;
     crc32.reset();
-    for (int i = 0; i < count; i++) {
+    for (int i = 0; i < updateIntCount; i++) {
       crc32.update(i);
     }
   }
@@ -17,6 +17,8 @@
 import argparse
 import json
 import math
+import statistics
+import sys
 
 from collections import OrderedDict
 
@@ -30,7 +32,18 @@ def BuildOptions():
         # Print default values.
         formatter_class = argparse.ArgumentDefaultsHelpFormatter)
     parser.add_argument('res_1', metavar = 'res_1.json')
-    parser.add_argument('res_2', metavar = 'res_2.json')
+    parser.add_argument('res_2', metavar = 'res_2.json', nargs = '?',
+                        help = '''The second result set. It defaults to the
+                        first one, to compare two configurations of a
+                        `--jvm-matrix` run or the builds of an `--ab` run. The
+                        builds A and B of an `--ab` run are compared by
+                        default.''')
+    parser.add_argument('--config-1', default = None,
+                        help = '''Compare the results of this JVM configuration
+                        of a `--jvm-matrix` run in res_1.json.''')
+    parser.add_argument('--config-2', default = None,
+                        help = '''Compare the results of this JVM configuration
+                        of a `--jvm-matrix` run in res_2.json.''')
     utils.AddReportFilterOptions(parser)
     parser.add_argument('--print-extended', '-e',
                         action='count', default=0,
@@ -59,6 +72,43 @@ def BuildOptions():
                         specified are discarded. The default is 0.05,
                         corresponding to 95%% certainty of rejecting the null
                         hypothesis.''')
+    parser.add_argument('--bootstrap', '-b',
+                        action = 'store_true', default = False,
+                        help = '''Print the bootstrap confidence interval of the
+                        ratio of the medians (res_2 / res_1) of each result and
+                        of the geomean of these ratios, with a verdict:
+                        `regression` when the whole interval is above
+                        1 + the regression threshold, `improvement` when it is
+                        below 1 - the threshold, and `no change` otherwise. The
+                        samples of the builds of an `--ab` result are resampled
+                        in pairs. Use NumPy, if installed, to vectorise the
+                        resampling.''')
+    parser.add_argument('--bootstrap-resamples',
+                        type = int, default = 2000,
+                        help = 'The number of bootstrap resamples.')
+    parser.add_argument('--bootstrap-seed',
+                        type = int, default = 0,
+                        help = '''The seed of the bootstrap resampling, fixed so
+                        that verdicts are reproducible.''')
+    parser.add_argument('--bootstrap-min-samples',
+                        type = int, default = 5,
+                        help = '''The minimum number of samples of each result
+                        for a bootstrap verdict. Results with fewer samples get
+                        the verdict `insufficient samples`, which does not fail
+                        `--fail-on-regression`.''')
+    parser.add_argument('--confidence',
+                        type = float, default = 0.95,
+                        help = 'The confidence level of the bootstrap intervals.')
+    parser.add_argument('--regression-threshold',
+                        type = float, default = 1.0,
+                        help = '''The change of the ratio, in %%, below which
+                        a result is not considered as a regression or an
+                        improvement.''')
+    parser.add_argument('--fail-on-regression',
+                        action = 'store_true', default = False,
+                        help = '''Exit with status 1 if the bootstrap verdict of
+                        a result or of the geomean is `regression`, e.g. to gate
+                        a continuous integration job. Implies `--bootstrap`.''')
     class LinaroAutomationAction(argparse.Action):
         def __init__(self, option_strings, **kwargs):
             super(LinaroAutomationAction, self).__init__(option_strings, **kwargs)
@@ -73,6 +123,25 @@ def BuildOptions():
                         help='Print results formatted for Linaro automation.')
     return parser.parse_args()
 
+# Return the results of the JVM configuration, or all results if no configuration is
+# specified.
+def SelectConfig(res, config, filename):
+    if config is None:
+        return res
+    if utils.IsDictionary(res) and config in res:
+        return res[config]
+    # The benchmark results of the top-level `run.py` are under `benchmarks`.
+    benchmarks = res.get(utils.benchmarks_label) if utils.IsDictionary(res) else None
+    if utils.IsDictionary(benchmarks) and config in benchmarks:
+        return OrderedDict([(utils.benchmarks_label, benchmarks[config])])
+    utils.Error('No JVM configuration `%s` in %s.' % (config, filename))
+
+# Return whether the result file holds the results of the builds of an `--ab` run.
+def IsABResult(filename):
+    with open(filename, 'r') as result_file:
+        res = json.load(result_file, object_pairs_hook=OrderedDict)
+    return utils.IsDictionary(res) and 'ab' in res.get(utils.metadata_label, {})
+
 # Filter out data entries that do not show any significant difference between
 # the two sets of results.
 def FilterSignificantChanges(data_1, data_2,
@@ -109,12 +178,61 @@ def OrderByDiff(entries):
 print_extended_mean_data = 1
 print_extended_raw_data = 2
 
+# The settings and the results of the bootstrap of the ratios of the results.
+class BootstrapOptions(object):
+    def __init__(self, resamples, seed, confidence, regression_threshold, min_samples,
+                 paired):
+        self.resamples = resamples
+        self.min_samples = min_samples
+        # Whether the samples of the two results are paired, as in the results of `--ab`.
+        self.paired = paired
+        self.generator = utils_stats.MakeBootstrapGenerator(seed)
+        self.confidence = confidence
+        self.threshold = regression_threshold / 100
+        # The bootstrap estimates of the ratio of each result, to compute the geomean.
+        self.ratios = []
+        self.regressions = []
+
+# `key_path` is the full key of the result, e.g. `benchmarks/Foo.Bar/Compiled`, so that
+# the regressions listed identify the result.
+def GetBootstrapColumns(bootstrap, key_path, data_1, data_2):
+    if not data_1 or not data_2:
+        return [float('nan'), float('nan'), float('nan'), '']
+    ratio = utils_stats.GetRatio(statistics.median(data_2), statistics.median(data_1)) / 100
+    if min(len(data_1), len(data_2)) < bootstrap.min_samples:
+        # The interval of so few samples is meaningless. The result is left out of the
+        # geomean and cannot fail `--fail-on-regression`.
+        return [ratio, float('nan'), float('nan'), 'insufficient samples']
+    ratios = utils_stats.BootstrapMedianRatios(data_1, data_2, bootstrap.resamples,
+                                               bootstrap.generator, bootstrap.paired)
+    bootstrap.ratios.append(ratios)
+    low, high = utils_stats.CalcBootstrapInterval(ratios, bootstrap.confidence)
+    verdict = utils_stats.GetRatioVerdict(low, high, bootstrap.threshold)
+    if verdict == 'regression':
+        bootstrap.regressions.append(key_path)
+    return [ratio, low, high, verdict]
+
+def PrintBootstrapGeomean(bootstrap):
+    if not bootstrap.ratios:
+        return
+    geomeans = utils_stats.BootstrapGeomeanRatios(bootstrap.ratios)
+    low, high = utils_stats.CalcBootstrapInterval(geomeans, bootstrap.confidence)
+    verdict = utils_stats.GetRatioVerdict(low, high, bootstrap.threshold)
+    if verdict == 'regression':
+        bootstrap.regressions.append('geomean')
+    headers = ['', 'ratios', 'CI low', 'CI high', 'verdict']
+    utils_print.PrintTable(headers,
+                           [['geomean', len(bootstrap.ratios), low, high, verdict]])
+    print('')
+
 def PrintDiff(data_1, data_2,
               key=None,
               indentation='',
               print_extended=0,
               order_by_diff=False,
-              filter_stats_warnings=False):
+              filter_stats_warnings=False,
+              bootstrap=None,
+              key_path=None):
     indentation_level = '    '
     headers = ['', 'Wilcoxon P', 'T-test P',
                'median diff (%)', 'mad1 (%)', 'mad2 (%)']
@@ -122,6 +240,8 @@ def PrintDiff(data_1, data_2,
         headers.extend(['mean diff (%)', 'stdev1 (%)', 'stdev2 (%)'])
     if print_extended >= print_extended_raw_data:
         headers.extend(['median1', 'median2', 'mean1', 'mean2'])
+    if bootstrap is not None:
+        headers.extend(['median ratio', 'CI low', 'CI high', 'verdict'])
 
     if not data_1 and not data_2:
         # There is nothing to compare or print (filter may have removed values)
@@ -142,7 +262,9 @@ def PrintDiff(data_1, data_2,
                                     indentation + indentation_level,
                                     print_extended=print_extended,
                                     order_by_diff=order_by_diff,
-                                    filter_stats_warnings=filter_stats_warnings)
+                                    filter_stats_warnings=filter_stats_warnings,
+                                    bootstrap=bootstrap,
+                                    key_path=k if key_path is None else key_path + '/' + k)
             if maybe_entry is not None:
                 entries.append(maybe_entry)
         if entries:
@@ -169,6 +291,8 @@ def PrintDiff(data_1, data_2,
             res.extend([mean_diff, dp1, dp2])
         if print_extended >= print_extended_raw_data:
             res.extend([med1, med2, ave1, ave2])
+        if bootstrap is not None:
+            res.extend(GetBootstrapColumns(bootstrap, key_path, data_1, data_2))
         return res
     else:
         utils.Error('Unexpected data types %s and %s.' % \
@@ -176,6 +300,18 @@ def PrintDiff(data_1, data_2,
 
 if __name__ == "__main__":
     args = BuildOptions()
+    paired = False
+    if args.res_2 is None:
+        paired = IsABResult(args.res_1)
+        if args.config_1 is None and args.config_2 is None and IsABResult(args.res_1):
+            # The samples of A and B are paired, as the Wilcoxon signed-rank test and
+            # the paired t-test expect.
+            args.config_1 = 'A'
+            args.config_2 = 'B'
+        if args.config_1 is None or args.config_2 is None:
+            utils.Error('Comparing a result set with itself requires `--config-1` and '
+                        '`--config-2`.')
+        args.res_2 = args.res_1
     file_1 = open(args.res_1, 'r')
     file_2 = open(args.res_2, 'r')
     res_1 = json.load(file_1, object_pairs_hook=OrderedDict)
@@ -183,6 +319,9 @@ if __name__ == "__main__":
     file_1.close()
     file_2.close()
 
+    res_1 = SelectConfig(utils.StripMetadata(res_1), args.config_1, args.res_1)
+    res_2 = SelectConfig(utils.StripMetadata(res_2), args.config_2, args.res_2)
+
     res_1 = utils.Filter(res_1, args.filter, args.filter_out)
     res_2 = utils.Filter(res_2, args.filter, args.filter_out)
 
@@ -192,10 +331,19 @@ if __name__ == "__main__":
                                  args.ttest_p_threshold,
                                  filter_stats_warnings=args.output_for_linaro_automation)
 
+    bootstrap = None
+    if args.bootstrap or args.fail_on_regression:
+        bootstrap = BootstrapOptions(args.bootstrap_resamples, args.bootstrap_seed,
+                                     args.confidence, args.regression_threshold,
+                                     args.bootstrap_min_samples, paired)
+
     PrintDiff(res_1, res_2,
               print_extended=args.print_extended,
               order_by_diff=args.order_by_diff,
-              filter_stats_warnings=args.output_for_linaro_automation)
+              filter_stats_warnings=args.output_for_linaro_automation,
+              bootstrap=bootstrap)
+    if bootstrap is not None:
+        PrintBootstrapGeomean(bootstrap)
 
     if not utils.HaveSameKeys(res_1, res_2):
         diff = utils.KeepSameKeys(res_1, res_2)
@@ -206,3 +354,7 @@ if __name__ == "__main__":
         utils.Unflatten(res_1),
         utils.Unflatten(res_2),
         args.print_extended >= print_extended_raw_data)
+
+    if args.fail_on_regression and bootstrap.regressions:
+        print('Significant regressions: ' + ', '.join(bootstrap.regressions))
+        sys.exit(1)
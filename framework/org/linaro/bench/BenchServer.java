@@ -0,0 +1,141 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * BenchServer keeps a VM running benchmarks on request, so that repeated runs do not pay
+ * the start of the VM, the loading of classes and the calibration of benchmarks.
+ *
+ * Requests are read line by line from the standard input or from clients connected to
+ * a loopback port, one client at a time. A request is one of:
+ *
+ *    - benchmark names or specifications separated by spaces. The benchmarks are run and
+ *      their results are printed in the format of RunBench, followed by the line:
+ *        # done: <failures> failures
+ *      Benchmark instances are kept between requests with the same name or specification,
+ *      so their calibration is reused.
+ *
+ *    - '--reset' drops the kept benchmark instances.
+ *
+ *    - '--quit' ends the session: the server exits when reading the standard input and
+ *      closes the connection otherwise.
+ *
+ * The results of a client request are sent to the client. Log messages are printed on
+ * the standard error of the server.
+ */
+class BenchServer {
+  private static final String RESET_COMMAND = "--reset";
+  private static final String QUIT_COMMAND = "--quit";
+
+  private RunBench runner;
+  private boolean verify;
+  private Map<String, Benchmark> benchmarks = new HashMap<String, Benchmark>();
+
+  public BenchServer(RunBench runner, boolean verify) {
+    this.runner = runner;
+    this.verify = verify;
+  }
+
+  // Serve the requests read from the standard input.
+  public void serve() throws IOException {
+    serve(System.in);
+  }
+
+  // Serve the requests of clients connected to the loopback port. If the port is 0, a free
+  // port is used. The port is printed on the standard output.
+  public void serve(int port) throws IOException {
+    ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+    try {
+      System.out.println("# listening on " + server.getInetAddress().getHostAddress() + ":"
+          + server.getLocalPort());
+      System.out.flush();
+      PrintStream stdout = System.out;
+      while (true) {
+        Socket client = server.accept();
+        SimpleLogger.getInstance().info("Client connected: " + client.getRemoteSocketAddress());
+        try {
+          // RunBench and benchmarks print on the standard output.
+          System.setOut(new PrintStream(client.getOutputStream(), true, "UTF-8"));
+          serve(client.getInputStream());
+        } catch (IOException e) {
+          SimpleLogger.getInstance().error("Client failed: " + e);
+        } finally {
+          System.out.flush();
+          System.setOut(stdout);
+          client.close();
+        }
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  private void serve(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (line.equals(QUIT_COMMAND)) {
+        break;
+      } else if (line.equals(RESET_COMMAND)) {
+        benchmarks.clear();
+        System.out.println("# reset");
+      } else {
+        System.out.println("# done: " + run(line.split("\\s+")) + " failures");
+      }
+      System.out.flush();
+    }
+  }
+
+  // Run the benchmarks and return the number of failed ones.
+  private int run(String[] benchNames) {
+    int failures = 0;
+    for (String benchName : benchNames) {
+      Benchmark benchmark = benchmarks.get(benchName);
+      try {
+        if (benchmark == null) {
+          benchmark = Benchmark.fromString(benchName);
+          benchmarks.put(benchName, benchmark);
+        }
+      } catch (Exception e) {
+        SimpleLogger.getInstance().error("Cannot create the benchmark " + benchName + ": " + e);
+        ++failures;
+        continue;
+      }
+      if (runner.runBenchSet(benchmark, verify) != 0) {
+        ++failures;
+      }
+    }
+    Benchmark.saveCalibrationCache();
+    return failures;
+  }
+}
@@ -17,11 +17,20 @@
 
 package org.linaro.bench;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -34,19 +43,40 @@ import java.util.regex.Pattern;
  *      must have one parameter of the type 'int' which means a number of
  *      iterations. A method can have IterationAnnotation which specifies a
  *      number of iterations. If the method does not it, a calibration process
- *      is used to find out a needed number of iterations.
+ *      is used to find out a needed number of iterations. The return value of
+ *      a method, if any, is consumed with Blackhole so that the compiler cannot
+ *      eliminate the code computing it. Values computed inside the loop can be
+ *      passed to Blackhole.consume, or to a Blackhole field for objects.
  *
  *    - Instance methods with the prefix 'setup' are used to initialize
- *      benchmark data.
+ *      benchmark data. Instance methods with the prefix 'teardown' release it
+ *      after the benchmarking methods have been run and verified. Methods with
+ *      SetupAnnotation or TeardownAnnotation are run at the FixtureLevel of
+ *      the annotation instead, e.g. around each iteration, to reset the state
+ *      of the benchmark without timing it.
  *
  *    - Instance methods with the prefix 'verify' are used to check that
  *      'time' methods produce correct results.
+ *
+ *    - Fields with ParamAnnotation are parameters of the benchmark. Each 'time'
+ *      method is expanded into one benchmarking method per combination of
+ *      the parameter values, identified as e.g. 'algorithm/Sort.BubbleSort[size=2048]'.
+ *      The fields are set and 'setup' methods are run again before a combination
+ *      is calibrated or run.
+ *
+ * Benchmarking methods are run one after another in the order they are declared, unless
+ * a shuffle seed is set: the parameter combinations and the methods of each combination are
+ * then run in a random order. In the interleaved mode, the methods of a combination are warmed
+ * up and then run one sample each in turn, so that a drift of the state of the VM or of
+ * the machine during the run affects them alike.
  */
 public class Benchmark {
   private static final String TIME_BENCH_METHOD_PREFIX = "time";
 
   private static final String SETUP_METHOD_PREFIX = "setup";
 
+  private static final String TEARDOWN_METHOD_PREFIX = "teardown";
+
   private static final String VERIFY_BENCH_METHOD_PREFIX = "verify";
 
   private static final int ITERATIONS_LIMIT = 0x400000;
@@ -57,45 +87,110 @@ public class Benchmark {
   // The constant to indicate the unknown value of the calibration time.
   private static final long UNKNOWN_CALIBRATION_TIME = -1;
 
+  // Default number of timed samples collected for each benchmarking method.
+  public static final int DEFAULT_SAMPLES_COUNT = 1;
+
+  // Default coefficient of variation (in %) of successive warmup batches at which
+  // the adaptive warmup considers a benchmarking method to be in a steady state.
+  public static final double DEFAULT_WARMUP_CV_PERCENT = 2.0;
+
+  // Default maximum time spent in the adaptive warmup of a benchmarking method.
+  public static final long DEFAULT_MAX_WARMUP_TIME_MS = 4000;
+
+  // The number of successive warmup batches used to compute the coefficient of variation.
+  private static final int WARMUP_WINDOW = 3;
+
+  // Default number of iterations timed at once in the latency mode.
+  public static final int DEFAULT_LATENCY_BATCH = 1;
+
   /*
    * BenchmarkMethod is a class to work with methods containing benchmarking code.
    * Those methods run benchmarking code a number of iterations. The number of
    * iterations can be explicitly provided in the constructor or via methods IterationsAnnotation
    * or be calculated using calibration process.
    */
-  private static class BenchmarkMethod {
+  static class BenchmarkMethod {
     // The constant to indicate the unknown value of the iteration count.
     private static final int UNKNOWN_ITERATION_COUNT = -1;
 
-    private Object parent;
+    private Benchmark benchmark;
     private Method method;
+    private BenchmarkInvoker invoker;
     private int iterationsCount;
     private String id;
     private boolean doWarmup;
+    // The values of the benchmark parameters, ordered by the parameter name.
+    private Map<String, String> params;
+    // The number of operations and bytes processed by one iteration.
+    private int operationsPerIteration = 1;
+    private long bytesPerIteration = 0;
+    // Whether the iteration count comes from the calibration cache.
+    private boolean cachedCalibration;
+    // Statistics of the last warmup.
+    private int warmupBatches;
+    private double warmupCv = Double.NaN;
+    // The number of samples and the time in ns the method is run with when it is scheduled by
+    // a time budget, or 0 to use Benchmark.samplesCount without time limit.
+    private int scheduledSamples = 0;
+    private long scheduledTimeNs = 0;
+    // The time (System.nanoTime) by which the samples must have finished, if
+    // scheduledTimeNs > 0.
+    private long deadlineNs;
+    // The time of an iteration measured by the calibration, or 0 if the method has not been
+    // calibrated.
+    private double estimatedIterationNs = 0;
+    // The latencies recorded in the latency mode and the latencies of the sample being run,
+    // added to them when the sample is accepted. They are allocated before the method is
+    // timed the first time and reused afterwards.
+    private LatencyHistogram latencies;
+    private LatencyHistogram sampleLatencies;
+    // The state of the samples being collected, from startSamples to finishSamples.
+    private RuntimeMetrics.Counters warmupCounters;
+    private RuntimeMetrics.Counters counters;
+    private long[] durations;
+    private int sampleIndex;
+    private int sampleIterations;
+    private int jitReruns;
+    private long sampleDeadlineNs;
 
     // Construct BenchmarkMethod with the provided iteration count.
     // Arguments:
-    //   parent - an instance of the class containing benchmarking methods.
+    //   benchmark - the benchmark the method belongs to.
     //   method - a method containing benchmarking code.
+    //   params - the values of the benchmark parameters the method is run with.
     //   iterationCount - a number of iterations the method to run
     //                    benchmarking code. UNKNOWN_ITERATION_COUNT can be used
     //                    if the iteration count is provided later.
-    public BenchmarkMethod(Object parent, Method method, int iterationCount) {
-      this.parent = parent;
+    public BenchmarkMethod(Benchmark benchmark, Method method, Map<String, String> params,
+                           int iterationCount) {
+      this.benchmark = benchmark;
       this.method = method;
-      this.id = benchmarkIdentifier(method);
+      this.invoker = BenchmarkInvoker.create(Benchmark.invokerKind, benchmark.benchInstance,
+                                             method);
+      this.params = params;
+      this.id = benchmarkIdentifier(method) + paramsSuffix(params);
       this.doWarmup = true;
       this.iterationsCount = iterationCount;
+      IterationsAnnotation annotation = method.getAnnotation(IterationsAnnotation.class);
+      if (annotation != null) {
+        if (annotation.operationsPerInvocation() < 1) {
+          throw new IllegalArgumentException(
+              "The number of operations per invocation must be positive: " + method);
+        }
+        this.operationsPerIteration = annotation.operationsPerInvocation();
+        this.bytesPerIteration = annotation.bytesPerInvocation();
+      }
     }
 
     // Construct BenchmarkMethod based on the annotation if the method provides it.
     // If the method does not have the annotation, the iteration count will be set to
     // UNKNOWN_ITERATION_COUNT.
     // Arguments:
-    //   parent - an instance of the class containing benchmarking methods.
+    //   benchmark - the benchmark the method belongs to.
     //   method - a method containing benchmarking code.
-    public BenchmarkMethod(Object parent, Method method) {
-      this(parent, method, UNKNOWN_ITERATION_COUNT);
+    //   params - the values of the benchmark parameters the method is run with.
+    public BenchmarkMethod(Benchmark benchmark, Method method, Map<String, String> params) {
+      this(benchmark, method, params, UNKNOWN_ITERATION_COUNT);
       IterationsAnnotation annotation = method.getAnnotation(IterationsAnnotation.class);
       if (annotation != null) {
         this.doWarmup = !annotation.noWarmup();
@@ -109,14 +204,42 @@ public class Benchmark {
       return id;
     }
 
+    // Return the name of the method followed by the parameter values, if any.
+    // It is the name used in benchmark specifications.
     public String getName() {
-      return method.getName();
+      return method.getName() + paramsSuffix(params);
+    }
+
+    Map<String, String> getParams() {
+      return params;
+    }
+
+    public int getOperationsPerIteration() {
+      return operationsPerIteration;
+    }
+
+    public long getBytesPerIteration() {
+      return bytesPerIteration;
     }
 
     public int getIterationCount() {
       return iterationsCount;
     }
 
+    // Run the method with the provided number of samples. Samples stop being collected, except
+    // the first one, when the time has been spent since the method started to run or when
+    // the next sample would not finish by the deadline (System.nanoTime). A sample disturbed
+    // by JIT activity is not run again if it would not finish by the deadline.
+    void setSchedule(int samples, long timeNs, long deadlineNs) {
+      this.scheduledSamples = samples;
+      this.scheduledTimeNs = timeNs;
+      this.deadlineNs = deadlineNs;
+    }
+
+    public boolean needsWarmup() {
+      return doWarmup;
+    }
+
     public boolean needsCalibration() {
       return iterationsCount == UNKNOWN_ITERATION_COUNT;
     }
@@ -125,88 +248,573 @@ public class Benchmark {
       // Estimate how long it takes to run one iteration.
       long iterations = 1;
       long duration = -1;
-      if (Benchmark.calibrationTimeNs == UNKNOWN_CALIBRATION_TIME) {
-        Benchmark.calibrationTimeNs = Benchmark.calculateCalibrationTimeNs();
-      }
+      long calibrationTimeNs = Benchmark.getCalibrationTimeNs();
+      // Calibration runs about twice the calibration time.
+      Benchmark.armWatchdog(id, 2 * calibrationTimeNs);
       while ((duration < calibrationTimeNs) && (iterations < ITERATIONS_LIMIT)) {
+        Benchmark.checkCancelled();
         iterations *= 2;
         duration = timeIterations((int) iterations);
       }
       // Estimate the number of iterations to run based on the calibration
       // phase, and benchmark the function.
-      double iterTime = duration / (double) iterations;
+      // The time of a method cheaper than the empty invocation baseline can be 0 once the
+      // baseline is subtracted. Its iterations are counted as taking 1 ns.
+      double iterTime = Math.max(1.0, duration / (double) iterations);
+      this.estimatedIterationNs = iterTime;
       this.iterationsCount = (int) Math.max(1.0, Benchmark.targetRunningTimeNs / iterTime);
+      if (Benchmark.calibrationCache != null) {
+        Benchmark.calibrationCache.put(id, Benchmark.invokerKind, iterationsCount);
+      }
+    }
+
+    // Use the iteration count from the calibration cache.
+    public void setCachedIterationCount(int iterationCount) {
+      this.iterationsCount = iterationCount;
+      this.cachedCalibration = true;
+    }
+
+    // Recalibrate the iteration count from the cache if the measured time per sample
+    // deviates from the target running time more than the cache tolerance.
+    private void checkCachedCalibration(long[] durations) {
+      if (!cachedCalibration || Benchmark.calibrationCache == null) {
+        return;
+      }
+      double duration = 0;
+      for (long sample : durations) {
+        duration += sample;
+      }
+      duration /= durations.length;
+      if (Benchmark.calibrationCache.isOutsideTolerance(duration, targetRunningTimeNs)) {
+        int recalibrated = (int) Math.max(1.0, Math.min(ITERATIONS_LIMIT * 2.0,
+            iterationsCount * (targetRunningTimeNs / duration)));
+        SimpleLogger.getInstance().info(id + ": cached calibration drifted (" + (long) duration
+            + " ns for " + iterationsCount + " iterations), recalibrated to " + recalibrated
+            + " iterations.");
+        this.iterationsCount = recalibrated;
+        Benchmark.calibrationCache.put(id, Benchmark.invokerKind, recalibrated);
+      }
     }
 
     public Result run() {
-      SimpleLogger log = SimpleLogger.getInstance();
-      log.debug("Running method: " + method.toString());
+      startSamples();
+      while (runSample()) {
+      }
+      return finishSamples();
+    }
 
+    // Warm up the method and prepare the collection of its samples with runSample.
+    void startSamples() {
+      SimpleLogger log = SimpleLogger.getInstance();
+      log.debug("Running method: " + method.toString() + " (invoker: " + invoker.getKind() + ")");
+      Benchmark.armWatchdog(id, getExpectedRunTimeNs());
+      sampleDeadlineNs = System.nanoTime() + scheduledTimeNs;
+
+      warmupBatches = 0;
+      warmupCv = Double.NaN;
+      warmupCounters = new RuntimeMetrics.Counters(1);
+      warmupCounters.start();
       if (this.doWarmup) {
         warmup();
       }
+      warmupCounters.stop(0);
+
+      sampleIterations = this.iterationsCount;
+      if (needsCalibration()) {
+        log.error(id + " is not calibrated. The iterations count to be used is 1.");
+        sampleIterations = 1;
+      }
 
-      long duration = timeIterations();
-      log.info(id + ": " + duration + " ns for " + iterationsCount + " iterations");
+      if (Benchmark.latencyBatch > 0) {
+        if (latencies == null) {
+          latencies = new LatencyHistogram();
+          sampleLatencies = new LatencyHistogram();
+        }
+        latencies.reset();
+      }
 
-      return new Result(this, duration, iterationsCount);
+      durations = new long[scheduledSamples > 0 ? scheduledSamples : Benchmark.samplesCount];
+      counters = new RuntimeMetrics.Counters(durations.length);
+      sampleIndex = 0;
+      jitReruns = 0;
     }
 
-    private long timeIterations() {
-      int iterations = this.iterationsCount;
-      if (needsCalibration()) {
-        SimpleLogger log = SimpleLogger.getInstance();
-        log.error(id + " is not calibrated. The iterations count to be used is 1.");
-        iterations = 1;
+    // Run the next sample. A sample is run again when it is disturbed by JIT activity and all
+    // samples are run again when they are too short for the timer. Return whether more
+    // samples need to be run.
+    boolean runSample() {
+      SimpleLogger log = SimpleLogger.getInstance();
+      long minDurationNs = Benchmark.getTimerCalibration().getMinDurationNs();
+      int i = sampleIndex;
+      Benchmark.checkCancelled();
+      long startNs = System.nanoTime();
+      counters.start();
+      if (Benchmark.latencyBatch > 0) {
+        sampleLatencies.reset();
+        durations[i] = timeLatencies(sampleIterations);
+      } else {
+        durations[i] = timeIterations(sampleIterations);
+      }
+      counters.stop(i);
+      log.info(id + ": " + durations[i] + " ns for " + sampleIterations + " iterations");
+      if (durations[i] < minDurationNs) {
+        if (Benchmark.rejectShortSamples) {
+          throw new RuntimeException(id + ": the sample of " + durations[i] + " ns is shorter"
+              + " than the shortest safe sample of " + minDurationNs + " ns for the timer.");
+        }
+        if (sampleIterations < ITERATIONS_LIMIT) {
+          // Run all samples again with more iterations.
+          sampleIterations = scaleIterations(sampleIterations, durations[i], minDurationNs);
+          this.iterationsCount = sampleIterations;
+          log.log(SimpleLogger.LogLevel.WARN, id + ": samples are shorter than "
+              + minDurationNs + " ns, running " + sampleIterations + " iterations instead.");
+          if (Benchmark.latencyBatch > 0) {
+            latencies.reset();
+          }
+          sampleIndex = 0;
+          return true;
+        }
+      }
+      // The next sample is expected to take as long as this one.
+      long nowNs = System.nanoTime();
+      boolean nextOverruns = scheduledTimeNs > 0 && nowNs + (nowNs - startNs) - deadlineNs > 0;
+      if (counters.hasJitActivity(i) && jitReruns < Benchmark.maxJitReruns && !nextOverruns) {
+        log.info(id + ": JIT activity during the sample, running it again.");
+        ++jitReruns;
+        return true;
+      }
+      if (Benchmark.latencyBatch > 0) {
+        latencies.add(sampleLatencies);
+      }
+      sampleIndex = i + 1;
+      if (scheduledTimeNs > 0 && sampleIndex < durations.length
+          && (nextOverruns || nowNs - sampleDeadlineNs >= 0)) {
+        log.info(id + ": scheduled time spent after " + sampleIndex + " samples.");
+        durations = Arrays.copyOf(durations, sampleIndex);
       }
+      return sampleIndex < durations.length;
+    }
+
+    // Return the result of the samples run since startSamples.
+    Result finishSamples() {
+      SimpleLogger log = SimpleLogger.getInstance();
+      long minDurationNs = Benchmark.getTimerCalibration().getMinDurationNs();
+      if (Benchmark.latencyBatch > 0
+          && latencies.getValueAtPercentile(50) * Benchmark.latencyBatch < minDurationNs) {
+        log.log(SimpleLogger.LogLevel.WARN, id + ": batches of " + Benchmark.latencyBatch
+            + " iterations are shorter than " + minDurationNs + " ns, their latencies are"
+            + " imprecise. Use a larger latency batch.");
+      }
+      Result result = new Result(this, durations, sampleIterations, counters, warmupCounters,
+                                 jitReruns, Benchmark.latencyBatch > 0 ? latencies : null);
+      checkCachedCalibration(durations);
+      durations = null;
+      counters = null;
+      warmupCounters = null;
+      return result;
+    }
 
-      return timeIterations(iterations);
+    // Return the time the method is expected to take to run: the warmup and the samples,
+    // each sample taking the target running time or, when one iteration takes longer,
+    // the calibrated iterations.
+    private long getExpectedRunTimeNs() {
+      long sampleNs = getExpectedSampleTimeNs();
+      int samples = scheduledSamples > 0 ? scheduledSamples : Benchmark.samplesCount;
+      double warmupNs = Benchmark.adaptiveWarmup ? Benchmark.maxWarmupTimeNs : sampleNs / 10;
+      return (long) (warmupNs + samples * sampleNs);
     }
 
-    private void warmup() {
+    // Return the time a sample is expected to take.
+    long getExpectedSampleTimeNs() {
+      return (long) Math.max(targetRunningTimeNs,
+                             estimatedIterationNs * Math.max(1, iterationsCount));
+    }
+
+    // Warm up the method with batches of a tenth of the iterations.
+    // By default one batch is run. With the adaptive warmup, batches are run until the
+    // coefficient of variation of the last WARMUP_WINDOW batches is not greater than
+    // the requested one or the maximum warmup time is spent.
+    void warmup() {
       int iterations = this.iterationsCount / 10;
       if (iterations == 0) iterations = 1;
-      timeIterations(iterations);
+      if (!Benchmark.adaptiveWarmup) {
+        timeIterations(iterations);
+        warmupBatches = 1;
+        return;
+      }
+
+      double[] window = new double[WARMUP_WINDOW];
+      long warmupTime = 0;
+      warmupBatches = 0;
+      warmupCv = Double.NaN;
+      do {
+        Benchmark.checkCancelled();
+        long duration = timeIterations(iterations);
+        warmupTime += duration;
+        window[warmupBatches % WARMUP_WINDOW] = duration;
+        ++warmupBatches;
+        if (warmupBatches >= WARMUP_WINDOW) {
+          warmupCv = Statistics.coefficientOfVariation(window);
+        }
+      } while (!isWarmupStable() && warmupTime < Benchmark.maxWarmupTimeNs);
+
+      SimpleLogger log = SimpleLogger.getInstance();
+      log.info(id + ": warmup of " + warmupBatches + " batches, cv " + warmupCv);
+      if (!isWarmupStable()) {
+        log.log(SimpleLogger.LogLevel.WARN, id + " did not reach a steady state during warmup.");
+      }
     }
 
-    private long timeIterations(int iterationsCount) {
-      long start = 0;
-      long end = 0;
+    private boolean isWarmupStable() {
+      return warmupCv <= Benchmark.warmupCv;
+    }
+
+    // Return the number of iterations of samples twice as long as the minimum duration.
+    private static int scaleIterations(int iterations, long duration, long minDurationNs) {
+      double factor = duration > 0 ? 2.0 * minDurationNs / duration : 10.0;
+      return (int) Math.min(ITERATIONS_LIMIT,
+                            Math.max(iterations + 1.0, Math.ceil(iterations * factor)));
+    }
+
+    // Run the iterations in batches of Benchmark.latencyBatch iterations timed one by one,
+    // record the time per iteration of each batch into the latency histogram of the sample
+    // and return the time of all batches.
+    private long timeLatencies(int iterationsCount) {
+      long duration = 0;
+      for (int done = 0; done < iterationsCount; done += Benchmark.latencyBatch) {
+        Benchmark.checkCancelled();
+        int batch = Math.min(Benchmark.latencyBatch, iterationsCount - done);
+        long batchDuration = timeIterations(batch);
+        sampleLatencies.record(batchDuration / batch);
+        duration += batchDuration;
+      }
+      return duration;
+    }
+
+    // Run the iterations and return their time in ns. The batch and iteration fixtures of
+    // the benchmark are run around them and are not timed. The empty invocation baseline is
+    // subtracted from the time of each call of the method.
+    long timeIterations(int iterationsCount) {
+      long baselineNs = Benchmark.getTimerCalibration().getBaselineNs();
+      long duration = 0;
+      benchmark.runFixtures(FixtureLevel.BATCH, benchmark.setupMethods);
       try {
-        start = System.nanoTime();
-        method.invoke(parent, iterationsCount);
-        end = System.nanoTime();
-      } catch (Exception e) {
+        if (benchmark.hasFixtures(FixtureLevel.ITERATION)) {
+          for (int i = 0; i < iterationsCount; ++i) {
+            Benchmark.checkCancelled();
+            benchmark.runFixtures(FixtureLevel.ITERATION, benchmark.setupMethods);
+            long start = System.nanoTime();
+            invoker.invoke(1);
+            duration += Math.max(0, System.nanoTime() - start - baselineNs);
+            benchmark.runFixtures(FixtureLevel.ITERATION, benchmark.teardownMethods);
+          }
+        } else {
+          long start = System.nanoTime();
+          invoker.invoke(iterationsCount);
+          duration = Math.max(0, System.nanoTime() - start - baselineNs);
+        }
+      } catch (Throwable e) {
         throw new RuntimeException(e);
       }
-      return end - start;
+      benchmark.runFixtures(FixtureLevel.BATCH, benchmark.teardownMethods);
+      return duration;
     }
   }
 
   /*
    * Result represents a result of a benchmarking method.
+   * It contains all timed samples of the method. Each sample is the time of running
+   * the method the same number of iterations. Statistics are calculated on the time
+   * per iteration of the samples.
    */
   public static class Result {
+    // The latency percentiles reported in the latency mode.
+    public static final double[] LATENCY_PERCENTILES = {50, 90, 99, 99.9};
+
     private BenchmarkMethod benchMethod;
-    private long duration;
+    private long[] durations;
     private int iterations;
-
-    private Result(BenchmarkMethod benchMethod, long duration, int iterations) {
+    // The time per iteration of each sample, sorted in ascending order.
+    private double[] sortedSamples;
+    private int warmupBatches;
+    private double warmupCv;
+    private boolean warmupStable;
+    // Runtime counters of all samples. They are RuntimeMetrics.UNAVAILABLE if the runtime
+    // does not provide them.
+    private long allocatedBytes;
+    private long gcCount;
+    private long gcTimeMs;
+    // JIT activity. The compilation times and loaded class counts are
+    // RuntimeMetrics.UNAVAILABLE if the runtime does not provide them.
+    private long warmupCompilationTimeMs;
+    private long warmupLoadedClasses;
+    private long[] compilationTimeMs;
+    private long[] loadedClasses;
+    private boolean[] jitActivity;
+    private int jitReruns;
+    // The latency percentiles in ns of LATENCY_PERCENTILES followed by the maximum latency.
+    // It is null if the method has not been run in the latency mode.
+    private long[] latencies;
+
+    private Result(BenchmarkMethod benchMethod, long[] durations, int iterations,
+                   RuntimeMetrics.Counters counters, RuntimeMetrics.Counters warmupCounters,
+                   int jitReruns, LatencyHistogram histogram) {
       this.benchMethod = benchMethod;
-      this.duration = duration;
+      this.durations = durations;
       this.iterations = iterations;
+      this.allocatedBytes = counters.getAllocatedBytes();
+      this.gcCount = counters.getGcCount();
+      this.gcTimeMs = counters.getGcTimeMs();
+      this.jitReruns = jitReruns;
+      this.warmupCompilationTimeMs = warmupCounters.getCompilationTimeMs(0);
+      this.warmupLoadedClasses = warmupCounters.getLoadedClasses(0);
+      this.compilationTimeMs = new long[durations.length];
+      this.loadedClasses = new long[durations.length];
+      this.jitActivity = new boolean[durations.length];
+      for (int i = 0; i < durations.length; ++i) {
+        this.compilationTimeMs[i] = counters.getCompilationTimeMs(i);
+        this.loadedClasses[i] = counters.getLoadedClasses(i);
+        this.jitActivity[i] = counters.hasJitActivity(i);
+      }
+      this.warmupBatches = benchMethod.warmupBatches;
+      this.warmupCv = benchMethod.warmupCv;
+      this.warmupStable = benchMethod.isWarmupStable();
+      this.sortedSamples = getSamples();
+      Arrays.sort(this.sortedSamples);
+      if (histogram != null) {
+        this.latencies = new long[LATENCY_PERCENTILES.length + 1];
+        for (int i = 0; i < LATENCY_PERCENTILES.length; ++i) {
+          this.latencies[i] = histogram.getValueAtPercentile(LATENCY_PERCENTILES[i]);
+        }
+        this.latencies[LATENCY_PERCENTILES.length] = histogram.getMax();
+      }
+    }
+
+    public String getID() {
+      return benchMethod.getID();
+    }
+
+    public int getIterations() {
+      return iterations;
+    }
+
+    public int getSampleCount() {
+      return durations.length;
+    }
+
+    // Return the durations of the samples in ns.
+    public long[] getDurations() {
+      return durations.clone();
+    }
+
+    // Return the time per iteration of each sample in ns.
+    public double[] getSamples() {
+      double[] samples = new double[durations.length];
+      for (int i = 0; i < durations.length; ++i) {
+        samples[i] = durations[i] / (double) iterations;
+      }
+      return samples;
+    }
+
+    public double getMin() {
+      return sortedSamples[0];
+    }
+
+    public double getMax() {
+      return sortedSamples[sortedSamples.length - 1];
+    }
+
+    public double getMedian() {
+      return getPercentile(50);
+    }
+
+    public double getPercentile(double percentile) {
+      return Statistics.percentile(sortedSamples, percentile);
+    }
+
+    public double getMean() {
+      return Statistics.mean(sortedSamples);
+    }
+
+    public double getStandardDeviation() {
+      return Statistics.standardDeviation(sortedSamples);
+    }
+
+    // Return the number of operations done by one iteration.
+    public int getOperationsPerIteration() {
+      return benchMethod.getOperationsPerIteration();
+    }
+
+    // Return the mean time per operation in ns.
+    public double getNsPerOperation() {
+      return getMean() / getOperationsPerIteration();
+    }
+
+    // Return the mean number of operations per second.
+    public double getOperationsPerSecond() {
+      return 1e9 / getNsPerOperation();
+    }
+
+    // Return the mean number of bytes processed per second. It is NaN if the method does
+    // not declare the number of bytes processed by an iteration.
+    public double getBytesPerSecond() {
+      if (benchMethod.getBytesPerIteration() <= 0) {
+        return Double.NaN;
+      }
+      return benchMethod.getBytesPerIteration() * 1e9 / getMean();
+    }
+
+    // Return the number of warmup batches run before the samples.
+    public int getWarmupBatches() {
+      return warmupBatches;
+    }
+
+    // Return the coefficient of variation of the last warmup batches. It is NaN if
+    // the adaptive warmup was not used or did not run enough batches.
+    public double getWarmupCoefficientOfVariation() {
+      return warmupCv;
+    }
+
+    // Return whether the adaptive warmup reached a steady state.
+    public boolean isWarmupStable() {
+      return warmupStable;
+    }
+
+    // Return the number of bytes allocated by the benchmark thread per iteration.
+    // It is NaN if the runtime does not provide it.
+    public double getAllocatedBytesPerIteration() {
+      return perIteration(allocatedBytes);
+    }
+
+    // Return the number of garbage collections per iteration.
+    // It is NaN if the runtime does not provide it.
+    public double getGcCountPerIteration() {
+      return perIteration(gcCount);
+    }
+
+    // Return the time in ms spent in garbage collections per iteration.
+    // It is NaN if the runtime does not provide it.
+    public double getGcTimeMsPerIteration() {
+      return perIteration(gcTimeMs);
+    }
+
+    // Return the time in ms spent in JIT compilation during the warmup.
+    public long getWarmupCompilationTimeMs() {
+      return warmupCompilationTimeMs;
+    }
+
+    // Return the number of classes loaded during the warmup.
+    public long getWarmupLoadedClasses() {
+      return warmupLoadedClasses;
+    }
+
+    // Return the time in ms spent in JIT compilation during each sample.
+    public long[] getCompilationTimeMs() {
+      return compilationTimeMs.clone();
+    }
+
+    // Return the number of classes loaded during each sample.
+    public long[] getLoadedClasses() {
+      return loadedClasses.clone();
+    }
+
+    // Return whether code was compiled or classes were loaded during each sample.
+    public boolean[] getJitActivity() {
+      return jitActivity.clone();
+    }
+
+    // Return the number of samples with JIT activity.
+    public int getJitActivitySampleCount() {
+      int count = 0;
+      for (boolean activity : jitActivity) {
+        if (activity) {
+          ++count;
+        }
+      }
+      return count;
+    }
+
+    // Return the number of samples run again because of JIT activity.
+    public int getJitReruns() {
+      return jitReruns;
+    }
+
+    // Return the time in ns subtracted from each timed call of the method.
+    public long getBaselineNs() {
+      return Benchmark.getTimerCalibration().getBaselineNs();
+    }
+
+    // Return whether the method has been run in the latency mode.
+    public boolean hasLatencies() {
+      return latencies != null;
+    }
+
+    // Return the latencies in ns of LATENCY_PERCENTILES followed by the maximum latency.
+    // The latency of an iteration is the time per iteration of the batch it was timed in,
+    // without the timer overhead.
+    public long[] getLatencies() {
+      return latencies.clone();
+    }
+
+    private double perIteration(long counter) {
+      if (counter == RuntimeMetrics.UNAVAILABLE) {
+        return Double.NaN;
+      }
+      return counter / ((double) iterations * getSampleCount());
     }
 
     public String toString() {
-      return String.format(
-          "%-40s%.2f ns per iteration", benchMethod.getID() + ": ", duration / (double) iterations);
+      List<String> details = new ArrayList<String>();
+      if (getOperationsPerIteration() != 1) {
+        details.add(String.format("%.2f ns per op, %.2f ops per second",
+            getNsPerOperation(), getOperationsPerSecond()));
+      }
+      if (!Double.isNaN(getBytesPerSecond())) {
+        details.add(String.format("%.2f MB per second", getBytesPerSecond() / 1e6));
+      }
+      if (getSampleCount() > 1) {
+        details.add(String.format(
+            "min %.2f, median %.2f, p90 %.2f, p99 %.2f, stddev %.2f, %d samples",
+            getMin(), getMedian(), getPercentile(90), getPercentile(99),
+            getStandardDeviation(), getSampleCount()));
+      }
+      if (hasLatencies()) {
+        details.add(String.format("latency p50 %d, p90 %d, p99 %d, p99.9 %d, max %d ns",
+            latencies[0], latencies[1], latencies[2], latencies[3], latencies[4]));
+      }
+      if (Benchmark.adaptiveWarmup && warmupBatches > 0) {
+        details.add(String.format("%d warmup batches, warmup cv %.2f%%%s",
+            warmupBatches, warmupCv * 100, warmupStable ? "" : ", not stable"));
+      }
+      if (Benchmark.gcStats) {
+        details.add(String.format(
+            "%.2f bytes allocated, %.6f GCs, %.6f ms of GC per iteration",
+            getAllocatedBytesPerIteration(), getGcCountPerIteration(),
+            getGcTimeMsPerIteration()));
+      }
+      if (Benchmark.jitStats) {
+        long compilationTime = 0;
+        for (long sampleCompilationTime : compilationTimeMs) {
+          compilationTime += sampleCompilationTime;
+        }
+        details.add(String.format(
+            "%d of %d samples with JIT activity, %d reruns, JIT %d ms in warmup, %d ms in samples",
+            getJitActivitySampleCount(), getSampleCount(), jitReruns,
+            warmupCompilationTimeMs, compilationTime));
+      }
+      String result = String.format(
+          "%-40s%.2f ns per iteration", benchMethod.getID() + ": ", getMean());
+      if (!details.isEmpty()) {
+        result += " (" + String.join(", ", details) + ")";
+      }
+      return result;
     }
 
     public boolean isBetterThan(Result result) {
       if (result == null) {
         return true;
       }
-      return this.duration / this.iterations < result.duration / result.iterations;
+      return this.getMean() < result.getMean();
     }
   }
 
@@ -216,7 +824,17 @@ public class Benchmark {
 
   private static final class SetupMethodSelector implements MethodSelector {
     public boolean accept(Method method) {
-      return method.getName().startsWith(SETUP_METHOD_PREFIX) && method.getParameterCount() == 0;
+      return (method.getName().startsWith(SETUP_METHOD_PREFIX)
+              || method.getAnnotation(SetupAnnotation.class) != null)
+          && method.getParameterCount() == 0;
+    }
+  }
+
+  private static final class TeardownMethodSelector implements MethodSelector {
+    public boolean accept(Method method) {
+      return (method.getName().startsWith(TEARDOWN_METHOD_PREFIX)
+              || method.getAnnotation(TeardownAnnotation.class) != null)
+          && method.getParameterCount() == 0;
     }
   }
 
@@ -245,6 +863,10 @@ public class Benchmark {
    *   <benchmark_class_name>[:<benchmark_method>:<iterations>]+
    */
   private static class BenchmarkSpecification {
+    // The benchmark method name can be followed by the values of the benchmark parameters:
+    //   <benchmark_method>[<param>=<value>(,<param>=<value>)*]
+    private static final Pattern METHOD_FORMAT = Pattern.compile("(\\w+)(?:\\[(.*)\\])?");
+
     String[] parts;
 
     public BenchmarkSpecification(String str) {
@@ -268,8 +890,34 @@ public class Benchmark {
       return 2 * index + 1; // skipping the class name.
     }
 
+    private Matcher matchMethod(int index) {
+      Matcher matcher = METHOD_FORMAT.matcher(parts[getMethodPartIndex(index)]);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException("The provided benchmark method is invalid: "
+            + parts[getMethodPartIndex(index)]);
+      }
+      return matcher;
+    }
+
     public String getMethodName(int index) {
-      return parts[getMethodPartIndex(index)];
+      return matchMethod(index).group(1);
+    }
+
+    public Map<String, String> getMethodParams(int index) {
+      Map<String, String> params = new LinkedHashMap<String, String>();
+      String paramList = matchMethod(index).group(2);
+      if (paramList == null) {
+        return params;
+      }
+      for (String param : paramList.split(",")) {
+        String[] nameAndValue = param.split("=", 2);
+        if (nameAndValue.length != 2) {
+          throw new IllegalArgumentException("The provided benchmark parameter is invalid: "
+              + param);
+        }
+        params.put(nameAndValue[0], nameAndValue[1]);
+      }
+      return params;
     }
 
     public int getMethodIterationCount(int index) {
@@ -284,22 +932,201 @@ public class Benchmark {
   // to have the calibration process as quick as possible. UNKNOWN_CALIBRATION_TIME means the time
   // has not been provided by an user. It will be calculated based on the target running time.
   private static long calibrationTimeNs = UNKNOWN_CALIBRATION_TIME;
+  // The number of timed samples collected for each benchmarking method.
+  private static int samplesCount = DEFAULT_SAMPLES_COUNT;
+  // Adaptive warmup configuration.
+  private static boolean adaptiveWarmup = false;
+  private static double warmupCv = DEFAULT_WARMUP_CV_PERCENT / 100;
+  private static long maxWarmupTimeNs =
+        TimeUnit.NANOSECONDS.convert(DEFAULT_MAX_WARMUP_TIME_MS, TimeUnit.MILLISECONDS);
+  // Whether allocation and GC statistics are printed with results.
+  private static boolean gcStats = false;
+  // Whether JIT activity statistics are printed with results.
+  private static boolean jitStats = false;
+  // The maximum number of times samples of a method are run again because of JIT activity.
+  private static int maxJitReruns = 0;
+  // The cache of calibrated iteration counts. It is null if no cache is used.
+  private static CalibrationCache calibrationCache = null;
+  // The tolerance (in %) of the calibration cache. It may be set before the cache.
+  private static double calibrationCacheTolerance = CalibrationCache.DEFAULT_TOLERANCE_PERCENT;
+  // The kind of invokers used to call benchmarking methods.
+  private static BenchmarkInvoker.Kind invokerKind = BenchmarkInvoker.DEFAULT_KIND;
+  // The number of iterations timed at once in the latency mode. 0 disables the latency mode.
+  private static int latencyBatch = 0;
+  // Whether samples shorter than the shortest safe sample of the timer are rejected instead
+  // of being run again with more iterations.
+  private static boolean rejectShortSamples = false;
+  // The watchdog of the thread running benchmarks, or null if there is none.
+  private static Watchdog watchdog = null;
+  // The seed and the generator of the random order of benchmarking methods. The generator is
+  // null if the methods are run in their declaration order.
+  private static long shuffleSeed;
+  private static Random shuffleRandom = null;
+  // Whether the samples of benchmarking methods are interleaved.
+  private static boolean interleaved = false;
+  // The values of benchmark parameters overriding the values of their annotations.
+  private static Map<String, String[]> paramOverrides = new HashMap<String, String[]>();
 
   private Object benchInstance;
-  private List<Method> setupMethods = new ArrayList<Method>();
+  // The setup and teardown methods of each FixtureLevel.
+  private Map<FixtureLevel, List<Method>> setupMethods = newFixtureMethods();
+  private Map<FixtureLevel, List<Method>> teardownMethods = newFixtureMethods();
   private List<BenchmarkMethod> benchMethods = new ArrayList<BenchmarkMethod>();
   private List<Method> verifyMethods = new ArrayList<Method>();
+  // The parameter fields of the benchmark, ordered by name.
+  private List<Field> paramFields = new ArrayList<Field>();
+  // The parameter values the benchmark instance has been set up with. It is null if
+  // the instance has not been set up yet.
+  private Map<String, String> currentParams = null;
+
+  private void findParamFields() {
+    for (Field field : benchInstance.getClass().getDeclaredFields()) {
+      if (field.getAnnotation(ParamAnnotation.class) != null) {
+        field.setAccessible(true);
+        paramFields.add(field);
+      }
+    }
+    Collections.sort(paramFields, new Comparator<Field>() {
+      @Override
+      public int compare(Field f1, Field f2) {
+        return f1.getName().compareTo(f2.getName());
+      }
+    });
+  }
+
+  // Return all combinations of the values of the parameter fields. There is one empty
+  // combination if the benchmark has no parameters.
+  private List<Map<String, String>> getParamCombinations() {
+    List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+    combinations.add(new LinkedHashMap<String, String>());
+    for (Field field : paramFields) {
+      String[] values = paramOverrides.get(field.getName());
+      if (values == null) {
+        values = field.getAnnotation(ParamAnnotation.class).value();
+        checkParamValues(field.getName(), values);
+      }
+      List<Map<String, String>> expanded = new ArrayList<Map<String, String>>();
+      for (Map<String, String> combination : combinations) {
+        for (String value : values) {
+          Map<String, String> params = new LinkedHashMap<String, String>(combination);
+          params.put(field.getName(), value);
+          expanded.add(params);
+        }
+      }
+      combinations = expanded;
+    }
+    return combinations;
+  }
+
+  // Set the parameter fields and run the setup methods if the method is run with other
+  // parameter values than the current ones. The teardown methods are run before if the
+  // benchmark has been set up with other values.
+  void prepare(BenchmarkMethod method) {
+    if (method.getParams().equals(currentParams)) {
+      return;
+    }
+    teardown();
+    try {
+      for (Field field : paramFields) {
+        String value = method.getParams().get(field.getName());
+        if (value == null) {
+          throw new IllegalArgumentException("No value of the benchmark parameter "
+              + field.getName() + " for " + method.getID());
+        }
+        field.set(benchInstance, parseParamValue(field.getType(), value));
+      }
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+    setup();
+    currentParams = method.getParams();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object parseParamValue(Class<?> type, String value) {
+    if (type == int.class || type == Integer.class) {
+      return Integer.valueOf(value);
+    } else if (type == long.class || type == Long.class) {
+      return Long.valueOf(value);
+    } else if (type == short.class || type == Short.class) {
+      return Short.valueOf(value);
+    } else if (type == byte.class || type == Byte.class) {
+      return Byte.valueOf(value);
+    } else if (type == float.class || type == Float.class) {
+      return Float.valueOf(value);
+    } else if (type == double.class || type == Double.class) {
+      return Double.valueOf(value);
+    } else if (type == boolean.class || type == Boolean.class) {
+      return Boolean.valueOf(value);
+    } else if (type == char.class || type == Character.class) {
+      if (value.length() != 1) {
+        throw new IllegalArgumentException("Invalid char parameter value: " + value);
+      }
+      return value.charAt(0);
+    } else if (type == String.class) {
+      return value;
+    } else if (type.isEnum()) {
+      return Enum.valueOf((Class<? extends Enum>) type, value);
+    }
+    throw new IllegalArgumentException("Unsupported benchmark parameter type: " + type);
+  }
+
+  // Check that the values can be used in method identifiers and benchmark specifications.
+  private static void checkParamValues(String name, String[] values) {
+    if (values.length == 0) {
+      throw new IllegalArgumentException("No values of the benchmark parameter " + name);
+    }
+    for (String value : values) {
+      if (value.isEmpty() || !value.matches("[^:,=\\[\\]\\s]+")) {
+        throw new IllegalArgumentException("Invalid value of the benchmark parameter "
+            + name + ": '" + value + "'");
+      }
+    }
+  }
+
+  // Return the suffix of the method identifier for the parameter values:
+  //   [<param>=<value>(,<param>=<value>)*]
+  // It is empty if there are no parameters.
+  private static String paramsSuffix(Map<String, String> params) {
+    if (params.isEmpty()) {
+      return "";
+    }
+    StringBuilder suffix = new StringBuilder("[");
+    for (Map.Entry<String, String> param : params.entrySet()) {
+      if (suffix.length() > 1) {
+        suffix.append(',');
+      }
+      suffix.append(param.getKey()).append('=').append(param.getValue());
+    }
+    return suffix.append(']').toString();
+  }
+
+  private static Map<FixtureLevel, List<Method>> newFixtureMethods() {
+    Map<FixtureLevel, List<Method>> methods =
+        new EnumMap<FixtureLevel, List<Method>>(FixtureLevel.class);
+    for (FixtureLevel level : FixtureLevel.values()) {
+      methods.put(level, new ArrayList<Method>());
+    }
+    return methods;
+  }
 
   private void findSetupAndVerifyMethods() {
     // Each method declared in benchmarkClass is checked whether it is
-    // one of special methods ('setup', 'verify').
+    // one of special methods ('setup', 'teardown', 'verify').
     // Found methods are stored into corresponding lists.
     MethodSelector setupMethodsSelector = new SetupMethodSelector();
+    MethodSelector teardownMethodsSelector = new TeardownMethodSelector();
     MethodSelector verifyMethodsSelector = new VerifyMethodSelector();
 
     for (Method method : benchInstance.getClass().getDeclaredMethods()) {
       if (setupMethodsSelector.accept(method)) {
-        setupMethods.add(method);
+        SetupAnnotation annotation = method.getAnnotation(SetupAnnotation.class);
+        FixtureLevel level = annotation == null ? FixtureLevel.TRIAL : annotation.value();
+        setupMethods.get(level).add(method);
+      } else if (teardownMethodsSelector.accept(method)) {
+        TeardownAnnotation annotation = method.getAnnotation(TeardownAnnotation.class);
+        FixtureLevel level = annotation == null ? FixtureLevel.TRIAL : annotation.value();
+        teardownMethods.get(level).add(method);
       } else if (verifyMethodsSelector.accept(method)) {
         verifyMethods.add(method);
       }
@@ -312,11 +1139,50 @@ public class Benchmark {
     MethodSelector benchMethodsSelector = new TimeBenchmarkMethodSelector();
     for (Method method : benchInstance.getClass().getDeclaredMethods()) {
       if (benchMethodsSelector.accept(method)) {
-        benchMethods.add(new BenchmarkMethod(benchInstance, method));
+        addBenchMethods(method);
       }
     }
   }
 
+  // Add a benchmarking method for each combination of the parameter values.
+  private void addBenchMethods(Method method) {
+    for (Map<String, String> params : getParamCombinations()) {
+      benchMethods.add(new BenchmarkMethod(this, method, params));
+    }
+  }
+
+  // Return the benchmarking methods grouped by their parameter values, in the order of
+  // the first method of each group.
+  private static List<List<BenchmarkMethod>> groupByParams(List<BenchmarkMethod> methods) {
+    Map<Map<String, String>, List<BenchmarkMethod>> groups =
+        new LinkedHashMap<Map<String, String>, List<BenchmarkMethod>>();
+    for (BenchmarkMethod method : methods) {
+      List<BenchmarkMethod> group = groups.get(method.getParams());
+      if (group == null) {
+        group = new ArrayList<BenchmarkMethod>();
+        groups.put(method.getParams(), group);
+      }
+      group.add(method);
+    }
+    return new ArrayList<List<BenchmarkMethod>>(groups.values());
+  }
+
+  // Shuffle the parameter combinations and the methods of each combination if a shuffle seed
+  // is set. The methods of a combination stay together, so that the benchmark is not set up
+  // again between them.
+  private void shuffleBenchMethods() {
+    if (shuffleRandom == null) {
+      return;
+    }
+    List<List<BenchmarkMethod>> groups = groupByParams(benchMethods);
+    shuffle(groups);
+    benchMethods.clear();
+    for (List<BenchmarkMethod> group : groups) {
+      shuffle(group);
+      benchMethods.addAll(group);
+    }
+  }
+
   private void createBenchInstance(String className) {
     try {
       Class<?> clazz = Class.forName(className);
@@ -330,23 +1196,30 @@ public class Benchmark {
   private Benchmark(BenchmarkSpecification benchmarkSpecification) {
     createBenchInstance(benchmarkSpecification.getClassName());
     findSetupAndVerifyMethods();
+    findParamFields();
     for (int i = 0; i < benchmarkSpecification.getMethodCount(); ++i) {
       String methodName = benchmarkSpecification.getMethodName(i);
+      Map<String, String> params = benchmarkSpecification.getMethodParams(i);
       int iterationCount = benchmarkSpecification.getMethodIterationCount(i);
       try {
         Method method = benchInstance.getClass().getDeclaredMethod(methodName, int.class);
-        benchMethods.add(new BenchmarkMethod(benchInstance, method, iterationCount));
+        benchMethods.add(new BenchmarkMethod(this, method, params, iterationCount));
       } catch (Exception e) {
         throw new RuntimeException("Failed to get the benchmark method: " + methodName, e);
       }
     }
-    // After all methods are processed the benchmark is setup.
-    setup();
+    // The methods are not shuffled: a specification, e.g. the one ConcurrentBenchmark builds
+    // the instances of its threads from, keeps the order of the benchmark it was printed from.
+    // After all methods are processed the benchmark is setup. Benchmarks with parameters
+    // are set up when their methods are run.
+    if (paramFields.isEmpty()) {
+      prepare(benchMethods.get(0));
+    }
   }
 
   // Construct Benchmark based on the name format:
   //   path/to/BenchmarkClass(.Benchmark)?
-  // All benchmarking methods of Benchmark are calibrated if needed.
+  // The benchmarking methods are not calibrated.
   private Benchmark(String benchName) {
     if (benchName == null) {
       throw new NullPointerException("The provided benchmark name is null.");
@@ -374,6 +1247,7 @@ public class Benchmark {
 
     createBenchInstance(benchmarkClassPath + benchmarkClass);
     findSetupAndVerifyMethods();
+    findParamFields();
 
     try {
       if (benchmarkMethodName == null) {
@@ -381,7 +1255,7 @@ public class Benchmark {
       } else {
         Method method = benchInstance.getClass().getDeclaredMethod(TIME_BENCH_METHOD_PREFIX
             + benchmarkMethodName, int.class);
-        benchMethods.add(new BenchmarkMethod(benchInstance, method));
+        addBenchMethods(method);
       }
     } catch (Exception e) {
       throw new RuntimeException("Failed to create a benchmark: " + benchName, e);
@@ -390,18 +1264,45 @@ public class Benchmark {
     if (benchMethods.isEmpty()) {
       throw new RuntimeException("No benchmark method in the benchmark: " + benchName);
     }
+    shuffleBenchMethods();
 
-    // After all methods are processed the benchmark is setup and calibrated.
-    setup();
-    calibrate();
+    // After all methods are processed the benchmark is setup. It is calibrated by
+    // calibrateMethods.
+    if (paramFields.isEmpty()) {
+      prepare(benchMethods.get(0));
+    }
   }
 
   public Result[] run() {
+    return run(null);
+  }
+
+  // Run all benchmarking methods and notify the listener, if any, of each result as soon as
+  // the method has been run.
+  Result[] run(ResultListener<Result> listener) {
     Result[] results = new Result[benchMethods.size()];
 
     int i = 0;
-    for (BenchmarkMethod method : benchMethods) {
-      results[i++] = method.run();
+    if (interleaved) {
+      for (List<BenchmarkMethod> group : groupByParams(benchMethods)) {
+        prepare(group.get(0));
+        for (Result result : runInterleaved(group)) {
+          results[i] = result;
+          if (listener != null) {
+            listener.onResult(results[i]);
+          }
+          ++i;
+        }
+      }
+    } else {
+      for (BenchmarkMethod method : benchMethods) {
+        prepare(method);
+        results[i] = method.run();
+        if (listener != null) {
+          listener.onResult(results[i]);
+        }
+        ++i;
+      }
     }
 
     // Sort results by method's name.
@@ -417,8 +1318,39 @@ public class Benchmark {
     return results;
   }
 
+  // Warm up the methods, which have the same parameter values, and run their samples in rounds
+  // of one sample per method. The order of the methods in a round is shuffled if a shuffle
+  // seed is set. A method leaves the rounds when all its samples have been run.
+  private static Result[] runInterleaved(List<BenchmarkMethod> methods) {
+    for (BenchmarkMethod method : methods) {
+      method.startSamples();
+    }
+    List<BenchmarkMethod> running = new ArrayList<BenchmarkMethod>(methods);
+    while (!running.isEmpty()) {
+      shuffle(running);
+      Iterator<BenchmarkMethod> iterator = running.iterator();
+      while (iterator.hasNext()) {
+        BenchmarkMethod method = iterator.next();
+        armWatchdog(method.getID(), method.getExpectedSampleTimeNs());
+        if (!method.runSample()) {
+          iterator.remove();
+        }
+      }
+    }
+    Result[] results = new Result[methods.size()];
+    for (int i = 0; i < results.length; ++i) {
+      results[i] = methods.get(i).finishSamples();
+    }
+    return results;
+  }
+
+  List<BenchmarkMethod> getBenchMethods() {
+    return benchMethods;
+  }
+
   public int verify() {
     SimpleLogger log = SimpleLogger.getInstance();
+    armWatchdog(benchInstance.getClass().getName().replace('.', '/') + " verification", 0);
     int verifyFailures = 0;
     try {
       for (Method verifyMethod : verifyMethods) {
@@ -433,9 +1365,29 @@ public class Benchmark {
     return verifyFailures;
   }
 
+  // Run the trial teardown methods if the benchmark has been set up. The benchmark is set up
+  // again before its methods are run next time. Benchmarks without trial teardown methods
+  // keep their state.
+  public void teardown() {
+    if (currentParams == null || teardownMethods.get(FixtureLevel.TRIAL).isEmpty()) {
+      return;
+    }
+    runFixtures(FixtureLevel.TRIAL, teardownMethods);
+    currentParams = null;
+  }
+
   private void setup() {
+    runFixtures(FixtureLevel.TRIAL, setupMethods);
+  }
+
+  // Return whether the benchmark has setup or teardown methods of the level.
+  private boolean hasFixtures(FixtureLevel level) {
+    return !setupMethods.get(level).isEmpty() || !teardownMethods.get(level).isEmpty();
+  }
+
+  private void runFixtures(FixtureLevel level, Map<FixtureLevel, List<Method>> fixtures) {
     try {
-      for (Method method : setupMethods) {
+      for (Method method : fixtures.get(level)) {
         method.invoke(benchInstance);
       }
     } catch (Exception e) {
@@ -443,10 +1395,29 @@ public class Benchmark {
     }
   }
 
+  private void loadCachedCalibration() {
+    if (calibrationCache == null) {
+      return;
+    }
+    for (BenchmarkMethod method : benchMethods) {
+      Integer iterationCount = calibrationCache.get(method.getID(), invokerKind);
+      if (method.needsCalibration() && iterationCount != null) {
+        method.setCachedIterationCount(iterationCount);
+      }
+    }
+  }
+
+  // Calibrate the benchmarking methods which need it, using the calibration cache if any.
+  void calibrateMethods() {
+    loadCachedCalibration();
+    calibrate();
+  }
+
   private void calibrate() {
     try {
       for (BenchmarkMethod method : benchMethods) {
         if (method.needsCalibration()) {
+          prepare(method);
           method.calibrateIterations();
         }
       }
@@ -472,6 +1443,7 @@ public class Benchmark {
   // Return the string representation of the benchmark.
   // Its format:
   //   <benchmark_class_name>[:<benchmark_method>:<iterations>]+
+  // where <benchmark_method> is followed by the parameter values, if any.
   public String toString() {
     StringBuilder resultBuilder = new StringBuilder();
     resultBuilder.append(benchInstance.getClass().getName());
@@ -482,8 +1454,17 @@ public class Benchmark {
     return resultBuilder.toString();
   }
 
-  // Return an instance of Benchmark based on the provided string.
+  // Return an instance of Benchmark based on the provided string. All benchmarking methods
+  // are calibrated if needed.
   public static Benchmark fromString(String str) {
+    Benchmark benchmark = fromStringWithoutCalibration(str);
+    benchmark.calibrateMethods();
+    return benchmark;
+  }
+
+  // Return an instance of Benchmark based on the provided string. The benchmarking methods
+  // need to be calibrated with calibrateMethods before they are run.
+  static Benchmark fromStringWithoutCalibration(String str) {
     if (str == null) {
       throw new NullPointerException("The provided string is null.");
     }
@@ -501,6 +1482,13 @@ public class Benchmark {
     }
   }
 
+  // Override the values of the benchmark parameter with the provided name in all benchmarks
+  // having it.
+  public static void setParamValues(String name, String[] values) {
+    checkParamValues(name, values);
+    paramOverrides.put(name, values.clone());
+  }
+
   public static void setTargetRunningTime(long time) {
     targetRunningTimeNs =
       TimeUnit.NANOSECONDS.convert(Long.valueOf(time), TimeUnit.MILLISECONDS);
@@ -515,6 +1503,194 @@ public class Benchmark {
       TimeUnit.NANOSECONDS.convert(Long.valueOf(time), TimeUnit.MILLISECONDS);
   }
 
+  // Return the time the calibration of a method runs for at least: the time set with
+  // setCalibrationTime or else a tenth of the target running time.
+  static long getCalibrationTimeNs() {
+    if (calibrationTimeNs == UNKNOWN_CALIBRATION_TIME) {
+      return calculateCalibrationTimeNs();
+    }
+    return calibrationTimeNs;
+  }
+
+  public static void setSamplesCount(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("The number of samples must be positive: " + count);
+    }
+    samplesCount = count;
+  }
+
+  public static int getSamplesCount() {
+    return samplesCount;
+  }
+
+  public static void setAdaptiveWarmup(boolean enabled) {
+    adaptiveWarmup = enabled;
+  }
+
+  // Set the coefficient of variation (in %) at which the adaptive warmup stops.
+  public static void setWarmupCv(double percent) {
+    warmupCv = percent / 100;
+  }
+
+  public static void setMaxWarmupTime(long time) {
+    maxWarmupTimeNs =
+      TimeUnit.NANOSECONDS.convert(Long.valueOf(time), TimeUnit.MILLISECONDS);
+  }
+
+  static boolean isAdaptiveWarmup() {
+    return adaptiveWarmup;
+  }
+
+  static long getMaxWarmupTimeNs() {
+    return maxWarmupTimeNs;
+  }
+
+  // Enable the latency mode: the iterations of the samples are timed in batches of
+  // the provided number of iterations and the percentiles of their latencies are reported.
+  public static void setLatencyBatch(int iterations) {
+    if (iterations < 1) {
+      throw new IllegalArgumentException("The latency batch must be positive: " + iterations);
+    }
+    latencyBatch = iterations;
+  }
+
+  // Return the measurements of the timer and of the baseline of the selected invoker.
+  static TimerCalibration getTimerCalibration() {
+    return TimerCalibrationHolder.TIMER_CALIBRATION;
+  }
+
+  // The measurements of the timer. They are taken when they are first needed, once the invoker
+  // kind has been set, and the initialization of the class makes them visible to all threads.
+  private static final class TimerCalibrationHolder {
+    private static final TimerCalibration TIMER_CALIBRATION = measure();
+
+    private static TimerCalibration measure() {
+      TimerCalibration timerCalibration = TimerCalibration.measure(invokerKind);
+      SimpleLogger.getInstance().info("Timer calibration:\n" + timerCalibration);
+      return timerCalibration;
+    }
+  }
+
+  // Return a report of the timer latency and granularity, and of the empty invocation baseline
+  // subtracted from the measured times.
+  public static String getTimerCalibrationReport() {
+    return getTimerCalibration().toString();
+  }
+
+  public static void setRejectShortSamples(boolean enabled) {
+    rejectShortSamples = enabled;
+  }
+
+  static void setWatchdog(Watchdog benchWatchdog) {
+    watchdog = benchWatchdog;
+  }
+
+  // Arm the watchdog, if any, for a phase of the calling thread expected to take the time.
+  static void armWatchdog(String label, long expectedNs) {
+    if (watchdog != null) {
+      watchdog.arm(label, expectedNs);
+    }
+  }
+
+  // Throw CancellationException if the thread has been interrupted, e.g. by the watchdog.
+  static void checkCancelled() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("The benchmark has been cancelled.");
+    }
+  }
+
+  public static void setGcStats(boolean enabled) {
+    gcStats = enabled;
+  }
+
+  public static void setJitStats(boolean enabled) {
+    jitStats = enabled;
+  }
+
+  public static void setMaxJitReruns(int reruns) {
+    maxJitReruns = reruns;
+  }
+
+  // Use the calibration cache stored in the file. Benchmarks created by name look up their
+  // iteration counts in the cache and store the calibrated ones into it.
+  public static void setCalibrationCache(String fileName) {
+    calibrationCache = new CalibrationCache(fileName);
+    calibrationCache.setTolerance(calibrationCacheTolerance);
+  }
+
+  // Set the tolerance of the calibration cache, whether or not it has been set yet.
+  public static void setCalibrationCacheTolerance(double percent) {
+    calibrationCacheTolerance = percent;
+    if (calibrationCache != null) {
+      calibrationCache.setTolerance(percent);
+    }
+  }
+
+  // Write the calibration cache to its file if it has been modified.
+  public static void saveCalibrationCache() {
+    if (calibrationCache != null) {
+      calibrationCache.save();
+    }
+  }
+
+  // Run the benchmarking methods, and the benchmarks of RunBench, in a random order generated
+  // from the seed.
+  public static void setShuffleSeed(long seed) {
+    shuffleSeed = seed;
+    shuffleRandom = new Random(seed);
+  }
+
+  // Return the shuffle seed, or null if the methods are run in their declaration order.
+  public static Long getShuffleSeed() {
+    return shuffleRandom == null ? null : shuffleSeed;
+  }
+
+  // Shuffle the list with the shuffle seed. The list is left as is if no seed is set.
+  static void shuffle(List<?> list) {
+    if (shuffleRandom != null) {
+      Collections.shuffle(list, shuffleRandom);
+    }
+  }
+
+  public static void setInterleaved(boolean enabled) {
+    interleaved = enabled;
+  }
+
+  // Set the kind of invokers used to call benchmarking methods.
+  // Arguments:
+  //   kind - "reflection", "methodhandle" or "lambda".
+  public static void setInvokerKind(String kind) {
+    if (kind.equals("reflection")) {
+      invokerKind = BenchmarkInvoker.Kind.REFLECTION;
+    } else if (kind.equals("methodhandle")) {
+      invokerKind = BenchmarkInvoker.Kind.METHOD_HANDLE;
+    } else if (kind.equals("lambda")) {
+      invokerKind = BenchmarkInvoker.Kind.LAMBDA;
+    } else {
+      throw new IllegalArgumentException("Unknown invoker: " + kind);
+    }
+  }
+
+  // Return a report of the fixed cost of a call of a benchmarking method for each kind
+  // of invokers, and of the overhead removed by the selected invoker compared to reflection.
+  public static String getInvokerOverheadReport() {
+    double reflectionNs = BenchmarkInvoker.measureOverheadNs(BenchmarkInvoker.Kind.REFLECTION);
+    double methodHandleNs =
+        BenchmarkInvoker.measureOverheadNs(BenchmarkInvoker.Kind.METHOD_HANDLE);
+    double lambdaNs = BenchmarkInvoker.measureOverheadNs(BenchmarkInvoker.Kind.LAMBDA);
+    double selectedNs = reflectionNs;
+    if (invokerKind == BenchmarkInvoker.Kind.METHOD_HANDLE) {
+      selectedNs = methodHandleNs;
+    } else if (invokerKind == BenchmarkInvoker.Kind.LAMBDA) {
+      selectedNs = lambdaNs;
+    }
+    return String.format("%-40s%.2f ns per call\n", "reflection: ", reflectionNs)
+        + String.format("%-40s%.2f ns per call\n", "methodhandle: ", methodHandleNs)
+        + String.format("%-40s%.2f ns per call\n", "lambda: ", lambdaNs)
+        + String.format("%-40s%.2f ns per call", "removed overhead: ",
+                        reflectionNs - selectedNs);
+  }
+
   public static long calculateCalibrationTimeNs() {
     // As we want the calibration process to be quick, the calibration time is chosen
     // to be the tenth of the target running time.
@@ -0,0 +1,321 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/*
+ * BenchmarkInvoker calls a 'time' method of a benchmark instance with a number of iterations.
+ * An invoker is bound to the method and the instance once, so that the work done between
+ * the two timer reads is only the call of the benchmark code.
+ *
+ * Three kinds of invokers are available:
+ *
+ *    - REFLECTION uses Method.invoke. Each call boxes the iteration count and allocates
+ *      the array of arguments.
+ *
+ *    - METHOD_HANDLE uses a MethodHandle bound to the instance and adapted to the type
+ *      (int)void. It is called with invokeExact, which neither boxes nor allocates.
+ *
+ *    - LAMBDA uses LambdaMetafactory to spin a class implementing a functional interface
+ *      which calls the method directly. The call is a plain interface call the compiler
+ *      can inline.
+ *
+ * The return value of non-void methods is passed to Blackhole.consume, so that the compiler
+ * cannot eliminate the code computing it. Objects are consumed by a Blackhole of the invoker.
+ *
+ * If the runtime does not support the requested kind (e.g. LambdaMetafactory is not available
+ * on Dalvik), the next kind in the order LAMBDA, METHOD_HANDLE, REFLECTION is used instead.
+ */
+abstract class BenchmarkInvoker {
+  public enum Kind {
+    REFLECTION, METHOD_HANDLE, LAMBDA
+  }
+
+  public static final Kind DEFAULT_KIND = Kind.LAMBDA;
+
+  // The number of calls and rounds used to measure the overhead of an invoker.
+  private static final int OVERHEAD_MEASUREMENT_CALLS = 1000000;
+  private static final int OVERHEAD_MEASUREMENT_ROUNDS = 10;
+
+  public abstract Kind getKind();
+
+  public abstract void invoke(int iterations) throws Throwable;
+
+  // Create an invoker of the specified kind.
+  // Arguments:
+  //   kind - the preferred kind of the invoker.
+  //   parent - an instance of the class containing benchmarking methods.
+  //   method - a method containing benchmarking code.
+  public static BenchmarkInvoker create(Kind kind, Object parent, Method method) {
+    if (kind == Kind.LAMBDA) {
+      try {
+        return createLambdaInvoker(parent, method);
+      } catch (Throwable e) {
+        SimpleLogger.getInstance().debug("Cannot create a lambda invoker for "
+            + method.getName() + ", using a method handle: " + e);
+        kind = Kind.METHOD_HANDLE;
+      }
+    }
+    if (kind == Kind.METHOD_HANDLE) {
+      try {
+        return new MethodHandleInvoker(parent, method);
+      } catch (Throwable e) {
+        SimpleLogger.getInstance().debug("Cannot create a method handle invoker for "
+            + method.getName() + ", using reflection: " + e);
+      }
+    }
+    return new ReflectionInvoker(parent, method);
+  }
+
+  // Measure the fixed cost of a call through an invoker of the specified kind.
+  // The cost is measured with a method which does nothing. The iteration count passed is
+  // large enough not to be in the cache of boxed integers.
+  // Returns the time in ns of one call in the fastest round of calls.
+  public static double measureOverheadNs(Kind kind) {
+    try {
+      Method method = EmptyBenchmark.class.getDeclaredMethod("timeEmpty", int.class);
+      BenchmarkInvoker invoker = create(kind, new EmptyBenchmark(), method);
+      long minDuration = Long.MAX_VALUE;
+      for (int round = 0; round < OVERHEAD_MEASUREMENT_ROUNDS; ++round) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OVERHEAD_MEASUREMENT_CALLS; ++i) {
+          invoker.invoke(1000);
+        }
+        long end = System.nanoTime();
+        minDuration = Math.min(minDuration, end - start);
+      }
+      return minDuration / (double) OVERHEAD_MEASUREMENT_CALLS;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static final class EmptyBenchmark {
+    public void timeEmpty(int iterations) {
+    }
+  }
+
+  private static final class ReflectionInvoker extends BenchmarkInvoker {
+    private final Object parent;
+    private final Method method;
+    private final boolean isVoid;
+    private final Blackhole blackhole = new Blackhole();
+
+    ReflectionInvoker(Object parent, Method method) {
+      this.parent = parent;
+      this.method = method;
+      this.isVoid = method.getReturnType() == void.class;
+    }
+
+    @Override
+    public Kind getKind() {
+      return Kind.REFLECTION;
+    }
+
+    @Override
+    public void invoke(int iterations) throws Throwable {
+      // The return values of primitive types are boxed.
+      Object result = method.invoke(parent, iterations);
+      if (!isVoid) {
+        blackhole.consume(result);
+      }
+    }
+  }
+
+  // Return the type of the Blackhole.consume overload used for values of the provided type.
+  private static Class<?> consumedType(Class<?> type) {
+    if (type == byte.class || type == short.class || type == char.class) {
+      return int.class;
+    }
+    if (type.isPrimitive()) {
+      return type;
+    }
+    return Object.class;
+  }
+
+  private static final class MethodHandleInvoker extends BenchmarkInvoker {
+    private final MethodHandle handle;
+
+    // The handle passes the return value of non-void methods to Blackhole.consume.
+    MethodHandleInvoker(Object parent, Method method) throws ReflectiveOperationException {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle target = lookup.unreflect(method);
+      if (!Modifier.isStatic(method.getModifiers())) {
+        target = target.bindTo(parent);
+      }
+      Class<?> returnType = method.getReturnType();
+      if (returnType != void.class) {
+        Class<?> consumed = consumedType(returnType);
+        MethodType consumeType = MethodType.methodType(void.class, consumed);
+        MethodHandle consume = consumed == Object.class
+            ? lookup.findVirtual(Blackhole.class, "consume", consumeType).bindTo(new Blackhole())
+            : lookup.findStatic(Blackhole.class, "consume", consumeType);
+        target = MethodHandles.filterReturnValue(
+            target.asType(MethodType.methodType(consumed, int.class)), consume);
+      }
+      this.handle = target.asType(MethodType.methodType(void.class, int.class));
+    }
+
+    @Override
+    public Kind getKind() {
+      return Kind.METHOD_HANDLE;
+    }
+
+    @Override
+    public void invoke(int iterations) throws Throwable {
+      handle.invokeExact(iterations);
+    }
+  }
+
+  // Functional interfaces implemented with LambdaMetafactory for each consumed return type.
+  public interface VoidFunction {
+    void apply(int iterations);
+  }
+
+  public interface IntFunction {
+    int apply(int iterations);
+  }
+
+  public interface LongFunction {
+    long apply(int iterations);
+  }
+
+  public interface FloatFunction {
+    float apply(int iterations);
+  }
+
+  public interface DoubleFunction {
+    double apply(int iterations);
+  }
+
+  public interface BooleanFunction {
+    boolean apply(int iterations);
+  }
+
+  public interface ObjectFunction {
+    Object apply(int iterations);
+  }
+
+  // Create an implementation of the functional interface calling the method of parent.
+  private static Object createFunction(Object parent, Method method, Class<?> functionClass)
+      throws Throwable {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    MethodHandle target = lookup.unreflect(method);
+    Class<?> returnType = consumedType(method.getReturnType());
+    if (functionClass == VoidFunction.class) {
+      returnType = void.class;
+    }
+    // Instance methods capture the parent, static methods do not capture anything.
+    boolean isStatic = Modifier.isStatic(method.getModifiers());
+    MethodType factoryType = isStatic
+        ? MethodType.methodType(functionClass)
+        : MethodType.methodType(functionClass, parent.getClass());
+    CallSite site = LambdaMetafactory.metafactory(
+        lookup,
+        "apply",
+        factoryType,
+        MethodType.methodType(returnType, int.class),
+        target,
+        MethodType.methodType(returnType, int.class));
+    return isStatic ? site.getTarget().invoke() : site.getTarget().invoke(parent);
+  }
+
+  // Create a lambda invoker consuming the return value of the method.
+  private static BenchmarkInvoker createLambdaInvoker(Object parent, Method method)
+      throws Throwable {
+    Class<?> consumed = consumedType(method.getReturnType());
+    if (method.getReturnType() == void.class) {
+      final VoidFunction function =
+          (VoidFunction) createFunction(parent, method, VoidFunction.class);
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          function.apply(iterations);
+        }
+      };
+    } else if (consumed == int.class) {
+      final IntFunction function = (IntFunction) createFunction(parent, method, IntFunction.class);
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          Blackhole.consume(function.apply(iterations));
+        }
+      };
+    } else if (consumed == long.class) {
+      final LongFunction function =
+          (LongFunction) createFunction(parent, method, LongFunction.class);
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          Blackhole.consume(function.apply(iterations));
+        }
+      };
+    } else if (consumed == float.class) {
+      final FloatFunction function =
+          (FloatFunction) createFunction(parent, method, FloatFunction.class);
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          Blackhole.consume(function.apply(iterations));
+        }
+      };
+    } else if (consumed == double.class) {
+      final DoubleFunction function =
+          (DoubleFunction) createFunction(parent, method, DoubleFunction.class);
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          Blackhole.consume(function.apply(iterations));
+        }
+      };
+    } else if (consumed == boolean.class) {
+      final BooleanFunction function =
+          (BooleanFunction) createFunction(parent, method, BooleanFunction.class);
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          Blackhole.consume(function.apply(iterations));
+        }
+      };
+    } else {
+      final ObjectFunction function =
+          (ObjectFunction) createFunction(parent, method, ObjectFunction.class);
+      final Blackhole blackhole = new Blackhole();
+      return new LambdaInvoker() {
+        @Override
+        public void invoke(int iterations) {
+          blackhole.consume(function.apply(iterations));
+        }
+      };
+    }
+  }
+
+  private abstract static class LambdaInvoker extends BenchmarkInvoker {
+    @Override
+    public Kind getKind() {
+      return Kind.LAMBDA;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *    Copyright 2015 ARM Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+
+public class BenchmarkList {
+  public static final String[] benchmarkList = {
+    "benchmarks/math/MathSpectralNorm",
+    "benchmarks/math/AccessNBody",
+    "benchmarks/math/MathPartialSums",
+    "benchmarks/math/MathCordic",
+    "benchmarks/algorithm/AccessFannkuch",
+    "benchmarks/algorithm/NSieve",
+    "benchmarks/algorithm/Richards",
+    "benchmarks/algorithm/Linpack",
+    "benchmarks/algorithm/BitopsNSieve",
+    "benchmarks/algorithm/Sort",
+    "benchmarks/algorithm/CryptoSHA1",
+    "benchmarks/algorithm/Dhrystone",
+    "benchmarks/algorithm/DeltaBlue",
+    "benchmarks/algorithm/CryptoMD5",
+    "benchmarks/reversigame/Reversi",
+    "benchmarks/stanford/Perm",
+    "benchmarks/stanford/Queens",
+    "benchmarks/stanford/Puzzle",
+    "benchmarks/stanford/Towers",
+    "benchmarks/stanford/RealMM",
+    "benchmarks/stanford/Treesort",
+    "benchmarks/stanford/Bubblesort",
+    "benchmarks/stanford/IntMM",
+    "benchmarks/stanford/Quicksort",
+    "benchmarks/stanford/Oscar",
+    "benchmarks/caffeinemark/LoopAtom",
+    "benchmarks/caffeinemark/SieveAtom",
+    "benchmarks/caffeinemark/StringAtom",
+    "benchmarks/caffeinemark/LogicAtom",
+    "benchmarks/caffeinemark/FloatAtom",
+    "benchmarks/caffeinemark/MethodAtom",
+    "benchmarks/jit_aot/LoadCheck",
+    "benchmarks/jit_aot/Invoke",
+    "benchmarks/testsimd/TestSIMDAdd",
+    "benchmarks/testsimd/TestSIMDCopy",
+    "benchmarks/testsimd/TestSIMDMul",
+    "benchmarks/testsimd/TestSIMDMlaInt",
+    "benchmarks/testsimd/TestSIMDLd4St4",
+    "benchmarks/testsimd/TestSIMDMlaShort",
+    "benchmarks/testsimd/TestReduceAdd",
+    "benchmarks/testsimd/TestSIMDLd3St3",
+    "benchmarks/testsimd/TestSIMDLd2St2",
+    "benchmarks/testsimd/TestRGBToCmyk",
+    "benchmarks/benchmarksgame/fasta_4",
+    "benchmarks/benchmarksgame/mandelbrot",
+    "benchmarks/benchmarksgame/binarytrees_6",
+    "benchmarks/benchmarksgame/spectralnorm",
+    "benchmarks/benchmarksgame/revcomp",
+    "benchmarks/benchmarksgame/nbody_5",
+    "benchmarks/benchmarksgame/meteor",
+    "benchmarks/benchmarksgame/regexdna",
+    "benchmarks/benchmarksgame/knucleotide",
+    "benchmarks/benchmarksgame/nbody_3",
+    "benchmarks/benchmarksgame/pidigits",
+    "benchmarks/benchmarksgame/fannkuchredux",
+    "benchmarks/benchmarksgame/binarytrees_2",
+    "benchmarks/benchmarksgame/fastaredux",
+    "benchmarks/benchmarksgame/fasta",
+    "benchmarks/micro/ArrayAccess",
+    "benchmarks/micro/Simd64Types",
+    "benchmarks/micro/ControlFlowRecursive",
+    "benchmarks/micro/HashMapBench",
+    "benchmarks/micro/BitfieldRotate",
+    "benchmarks/micro/ArrayBoundsCheck",
+    "benchmarks/micro/SystemArrayCopy",
+    "benchmarks/micro/VectorCalc",
+    "benchmarks/micro/ShifterOperand",
+    "benchmarks/micro/StringEquals",
+    "benchmarks/micro/intrinsics/OneBitIntrinsics",
+    "benchmarks/micro/intrinsics/Intrinsics",
+    "benchmarks/micro/intrinsics/MathIntrinsics",
+    "benchmarks/micro/intrinsics/CRC32Bench",
+    "benchmarks/micro/Base64",
+    "benchmarks/micro/PrefetchLoopedArrayAccess",
+    "benchmarks/micro/Exceptions",
+    "benchmarks/micro/GCCLoops",
+    "benchmarks/micro/StringOps",
+  };
+}
@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+/*
+ * Blackhole consumes values computed by benchmarking code, so that the compiler cannot
+ * eliminate the code computing them.
+ *
+ * Primitive values are compared with two volatile fields holding different values.
+ * The comparison is never true, but the compiler has to load the fields and keep the value.
+ * This is cheaper than a volatile store. They are consumed with the static methods.
+ *
+ * Objects are consumed by an instance of Blackhole, which stores them into a volatile field
+ * from time to time, with a decreasing frequency down to once every MAX_OBJECT_MASK + 1 calls
+ * on average, so that they escape. The state deciding when they are stored is per instance:
+ * each invoker has its own, and so do the benchmark instances of the threads of a concurrent
+ * benchmark, so that threads do not write to a shared cache line.
+ *
+ * The return values of 'time' methods are consumed by the framework. Benchmarks can consume
+ * values computed inside their loops with Blackhole.consume for primitive values, and with
+ * a Blackhole field of the benchmark for objects.
+ */
+public final class Blackhole {
+  private static volatile int int1 = 1;
+  private static volatile int int2 = 2;
+  private static volatile long long1 = 1;
+  private static volatile long long2 = 2;
+  private static volatile float float1 = 1.0f;
+  private static volatile float float2 = 2.0f;
+  private static volatile double double1 = 1.0;
+  private static volatile double double2 = 2.0;
+  private static volatile boolean boolean1 = true;
+  private static volatile boolean boolean2 = false;
+
+  // The largest mask of the pseudo-random values deciding when an object is stored.
+  private static final int MAX_OBJECT_MASK = 0xfffff;
+
+  private volatile Object objectSink;
+  private int objectSeed = (int) System.nanoTime();
+  private int objectMask = 1;
+
+  public static void consume(int value) {
+    if (value == int1 & value == int2) {
+      throw new IllegalStateException("Blackhole fields are corrupted.");
+    }
+  }
+
+  public static void consume(long value) {
+    if (value == long1 & value == long2) {
+      throw new IllegalStateException("Blackhole fields are corrupted.");
+    }
+  }
+
+  public static void consume(float value) {
+    if (value == float1 & value == float2) {
+      throw new IllegalStateException("Blackhole fields are corrupted.");
+    }
+  }
+
+  public static void consume(double value) {
+    if (value == double1 & value == double2) {
+      throw new IllegalStateException("Blackhole fields are corrupted.");
+    }
+  }
+
+  public static void consume(boolean value) {
+    if (value == boolean1 & value == boolean2) {
+      throw new IllegalStateException("Blackhole fields are corrupted.");
+    }
+  }
+
+  public void consume(Object value) {
+    // A linear congruential generator decides when the value is stored.
+    int seed = objectSeed * 0x19660D + 0x3C6EF35F;
+    objectSeed = seed;
+    if ((seed & objectMask) == 0) {
+      objectSink = value;
+      if (objectMask < MAX_OBJECT_MASK) {
+        objectMask = (objectMask << 1) + 1;
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/*
+ * CalibrationCache stores iteration counts found by the calibration process in a file,
+ * so that following runs do not need to calibrate benchmarking methods again.
+ *
+ * An entry is keyed by the benchmark ID of a method, the kind of invoker calling it, the VM
+ * vendor and version, the architecture and the target running time. The key also records that
+ * the empty invocation baseline is subtracted from the measured times, as the invoker kind
+ * changes both the baseline and the time per iteration. Its value is the iteration count.
+ */
+class CalibrationCache {
+  // Default tolerance (in %) of the difference between the measured time of a method
+  // using a cached iteration count and the target running time.
+  public static final double DEFAULT_TOLERANCE_PERCENT = 25.0;
+
+  private File file;
+  private Properties entries = new Properties();
+  private boolean modified = false;
+  private double tolerance = DEFAULT_TOLERANCE_PERCENT / 100;
+
+  public CalibrationCache(String fileName) {
+    this.file = new File(fileName);
+    if (!file.exists()) {
+      return;
+    }
+    InputStream in = null;
+    try {
+      try {
+        in = new FileInputStream(file);
+        entries.load(in);
+      } finally {
+        if (in != null) {
+          in.close();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to load the calibration cache: " + fileName, e);
+    }
+  }
+
+  public void setTolerance(double percent) {
+    tolerance = percent / 100;
+  }
+
+  // Return whether the measured time of a method deviates from the target running time
+  // more than the tolerance.
+  public boolean isOutsideTolerance(double duration, long targetRunningTimeNs) {
+    return Math.abs(duration - targetRunningTimeNs) > tolerance * targetRunningTimeNs;
+  }
+
+  // Return the cached iteration count of a benchmarking method, or null if there is no valid
+  // entry.
+  // Arguments:
+  //   id - the benchmark ID of the method.
+  //   invokerKind - the kind of invoker calling the method.
+  public Integer get(String id, BenchmarkInvoker.Kind invokerKind) {
+    String value = entries.getProperty(key(id, invokerKind));
+    if (value == null) {
+      return null;
+    }
+    try {
+      int count = Integer.parseInt(value);
+      if (count > 0) {
+        return count;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below.
+    }
+    SimpleLogger.getInstance().info("Ignoring invalid calibration cache entry of " + id + ": "
+        + value);
+    return null;
+  }
+
+  // Store the iteration count of a benchmarking method.
+  public void put(String id, BenchmarkInvoker.Kind invokerKind, int iterationCount) {
+    entries.setProperty(key(id, invokerKind), Integer.toString(iterationCount));
+    modified = true;
+  }
+
+  public void save() {
+    if (!modified) {
+      return;
+    }
+    OutputStream out = null;
+    try {
+      try {
+        out = new FileOutputStream(file);
+        entries.store(out, "Benchmark calibration cache");
+      } finally {
+        if (out != null) {
+          out.close();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to save the calibration cache: " + file, e);
+    }
+    modified = false;
+  }
+
+  private static String key(String id, BenchmarkInvoker.Kind invokerKind) {
+    return id
+        + "|" + invokerKind.name().toLowerCase()
+        + "|baseline_subtracted"
+        + "|" + System.getProperty("java.vm.vendor")
+        + "|" + System.getProperty("java.vm.version")
+        + "|" + System.getProperty("os.arch")
+        + "|" + Benchmark.getTargetRunningTimeNs();
+  }
+}
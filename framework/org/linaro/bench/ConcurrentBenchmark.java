@@ -0,0 +1,234 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+ * ConcurrentBenchmark runs benchmarking methods on several threads at the same time.
+ * Each thread has its own instance of the benchmark. The first instance is calibrated
+ * and the other ones are created from its specification, so that all threads run the same
+ * number of iterations.
+ *
+ * For each benchmarking method, all threads warm up, wait on a barrier and then time
+ * the method concurrently. The aggregate throughput is the number of iterations done by
+ * all threads divided by the time between the start of the first thread and the end of
+ * the last one.
+ *
+ * The wall time includes the batch and iteration fixtures of the benchmark, which are run
+ * by each thread around its samples.
+ *
+ * Benchmarks keeping results in static fields share them between threads, so their
+ * verification can fail in this mode.
+ */
+class ConcurrentBenchmark {
+  private List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+  /*
+   * Result represents a result of a benchmarking method run on several threads.
+   */
+  public static class Result {
+    private String id;
+    private int iterations;
+    private int operationsPerIteration;
+    private long wallTime;
+    private long[] threadDurations;
+
+    private Result(String id, int iterations, int operationsPerIteration, long wallTime,
+                   long[] threadDurations) {
+      this.id = id;
+      this.iterations = iterations;
+      this.operationsPerIteration = operationsPerIteration;
+      this.wallTime = wallTime;
+      this.threadDurations = threadDurations;
+    }
+
+    public String getID() {
+      return id + "[threads=" + getThreadCount() + "]";
+    }
+
+    // Return the number of iterations done by each thread.
+    public int getIterations() {
+      return iterations;
+    }
+
+    // Return the time in ns between the start of the first thread and the end of the last one.
+    public long getWallTime() {
+      return wallTime;
+    }
+
+    // Return the number of operations done by one iteration.
+    public int getOperationsPerIteration() {
+      return operationsPerIteration;
+    }
+
+    public int getThreadCount() {
+      return threadDurations.length;
+    }
+
+    // Return the time per iteration of each thread in ns.
+    public double[] getThreadLatencies() {
+      double[] latencies = new double[threadDurations.length];
+      for (int i = 0; i < threadDurations.length; ++i) {
+        latencies[i] = threadDurations[i] / (double) iterations;
+      }
+      return latencies;
+    }
+
+    // Return the number of iterations per second done by all threads.
+    public double getThroughput() {
+      return iterations * (double) getThreadCount() / wallTime * 1e9;
+    }
+
+    // Return the number of operations per second done by all threads.
+    public double getOperationsPerSecond() {
+      return getThroughput() * operationsPerIteration;
+    }
+
+    public String toString() {
+      double[] latencies = getThreadLatencies();
+      double maxLatency = 0.0;
+      for (double latency : latencies) {
+        maxLatency = Math.max(maxLatency, latency);
+      }
+      String operations = "";
+      if (operationsPerIteration != 1) {
+        operations = String.format(", %.2f ops per second", getOperationsPerSecond());
+      }
+      return String.format(
+          "%-40s%.2f ns per iteration (max %.2f, %.2f iterations per second%s, %d threads)",
+          getID() + ": ", Statistics.mean(latencies),
+          maxLatency, getThroughput(), operations, getThreadCount());
+    }
+  }
+
+  // Construct ConcurrentBenchmark with one instance of the benchmark per thread.
+  // Arguments:
+  //   benchName - a benchmark name or a benchmark specification.
+  //   threadCount - the number of threads to run benchmarking methods.
+  public ConcurrentBenchmark(String benchName, int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("The number of threads must be positive: "
+          + threadCount);
+    }
+    Benchmark calibrated = Benchmark.fromString(benchName);
+    benchmarks.add(calibrated);
+    String specification = calibrated.toString();
+    for (int i = 1; i < threadCount; ++i) {
+      benchmarks.add(Benchmark.fromString(specification));
+    }
+  }
+
+  public Result[] run() {
+    return run(null);
+  }
+
+  // Run all benchmarking methods and notify the listener, if any, of each result as soon as
+  // the method has been run.
+  Result[] run(ResultListener<Result> listener) {
+    int methodCount = benchmarks.get(0).getBenchMethods().size();
+    Result[] results = new Result[methodCount];
+    for (int i = 0; i < methodCount; ++i) {
+      results[i] = run(i);
+      if (listener != null) {
+        listener.onResult(results[i]);
+      }
+    }
+    return results;
+  }
+
+  public int verify() {
+    int verifyFailures = 0;
+    for (Benchmark benchmark : benchmarks) {
+      verifyFailures += benchmark.verify();
+    }
+    return verifyFailures;
+  }
+
+  public void teardown() {
+    for (Benchmark benchmark : benchmarks) {
+      benchmark.teardown();
+    }
+  }
+
+  private Result run(int methodIndex) {
+    final int threadCount = benchmarks.size();
+    final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+    final long[] starts = new long[threadCount];
+    final long[] ends = new long[threadCount];
+    final Throwable[] failures = new Throwable[threadCount];
+    Thread[] threads = new Thread[threadCount];
+
+    for (int i = 0; i < threadCount; ++i) {
+      final int threadIndex = i;
+      final Benchmark.BenchmarkMethod method =
+          benchmarks.get(i).getBenchMethods().get(methodIndex);
+      benchmarks.get(i).prepare(method);
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (method.needsWarmup()) {
+              method.warmup();
+            }
+            barrier.await();
+            starts[threadIndex] = System.nanoTime();
+            for (int sample = 0; sample < Benchmark.getSamplesCount(); ++sample) {
+              method.timeIterations(method.getIterationCount());
+            }
+            ends[threadIndex] = System.nanoTime();
+          } catch (Throwable e) {
+            failures[threadIndex] = e;
+            barrier.reset();
+          }
+        }
+      }, "bench-" + i);
+      threads[i].start();
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    // Report the failure which caused the barrier to be broken in other threads.
+    for (Throwable failure : failures) {
+      if (failure != null && !(failure instanceof BrokenBarrierException)) {
+        throw new RuntimeException(failure);
+      }
+    }
+
+    long firstStart = Long.MAX_VALUE;
+    long lastEnd = Long.MIN_VALUE;
+    long[] durations = new long[threadCount];
+    for (int i = 0; i < threadCount; ++i) {
+      firstStart = Math.min(firstStart, starts[i]);
+      lastEnd = Math.max(lastEnd, ends[i]);
+      durations[i] = ends[i] - starts[i];
+    }
+    Benchmark.BenchmarkMethod method = benchmarks.get(0).getBenchMethods().get(methodIndex);
+    int iterations = method.getIterationCount() * Benchmark.getSamplesCount();
+    return new Result(method.getID(), iterations, method.getOperationsPerIteration(),
+                      lastEnd - firstStart, durations);
+  }
+}
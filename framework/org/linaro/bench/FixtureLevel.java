@@ -0,0 +1,31 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+// The level of a setup or teardown method of a benchmark, i.e. how often it is run.
+public enum FixtureLevel {
+  // Once before the benchmarking methods are run with a combination of parameter values,
+  // or once after they have been run and verified.
+  TRIAL,
+  // Around each call of a benchmarking method: each calibration run, warmup batch and sample.
+  BATCH,
+  // Around each iteration. The benchmarking method is then called with one iteration at
+  // a time and only the calls are timed, so the timer is read twice per iteration. This
+  // level is for iterations much longer than the resolution of the timer.
+  ITERATION
+}
@@ -0,0 +1,200 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * ForkedBenchmark runs a benchmark in child VMs, so that the profile of the code shared
+ * between benchmarks (e.g. megamorphic call sites, deoptimizations) and the state of
+ * the heap left by other benchmarks do not change its results.
+ *
+ * Each child runs RunBench with the options of the parent for the benchmark only and prints
+ * its results on its standard output. The parent reads them from a pipe. When the benchmark
+ * is run in several forks, the results of a method are aggregated from the means reported by
+ * the forks. With the machine readable result formats, the records of the children are
+ * printed as they are read, so there is one record per method and fork.
+ * The standard error of the children is the one of the parent. A child exits with
+ * Watchdog.TIMEOUT_EXIT_CODE when a benchmark times out, after printing its TIMEOUT result.
+ *
+ * The child VM is the 'java' launcher of the running VM, so this mode is only supported on
+ * host VMs.
+ */
+class ForkedBenchmark {
+  // The format of a result line printed by RunBench:
+  //   <benchmark_id>: <time> ns per iteration[ (<details>)]
+  private static final Pattern RESULT_FORMAT =
+      Pattern.compile("(\\S+):\\s+(\\d+(?:\\.\\d+)?) ns per iteration.*");
+
+  private String benchName;
+  private int forkCount;
+  private List<String> jvmArgs;
+  private List<String> runBenchArgs;
+  private ResultFormatter formatter;
+  private int failedForks = 0;
+
+  /*
+   * Result represents the results of a benchmarking method in all forks.
+   */
+  public static class Result {
+    private String id;
+    private List<Double> forkMeans = new ArrayList<Double>();
+    // The line printed by the last fork, reported as is when there is only one fork.
+    private String lastLine;
+
+    private Result(String id) {
+      this.id = id;
+    }
+
+    public String getID() {
+      return id;
+    }
+
+    public int getForkCount() {
+      return forkMeans.size();
+    }
+
+    // Return the mean time per iteration reported by each fork.
+    public double[] getForkMeans() {
+      double[] means = new double[forkMeans.size()];
+      for (int i = 0; i < means.length; ++i) {
+        means[i] = forkMeans.get(i);
+      }
+      return means;
+    }
+
+    public String toString() {
+      if (getForkCount() == 1) {
+        return lastLine;
+      }
+      double[] means = getForkMeans();
+      double min = Double.MAX_VALUE;
+      double max = 0.0;
+      for (double mean : means) {
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+      }
+      return String.format(
+          "%-40s%.2f ns per iteration (min %.2f, max %.2f, stddev %.2f, %d forks)",
+          id + ": ", Statistics.mean(means), min, max, Statistics.standardDeviation(means),
+          getForkCount());
+    }
+  }
+
+  // Construct ForkedBenchmark.
+  // Arguments:
+  //   benchName - a benchmark name or a benchmark specification.
+  //   forkCount - the number of child VMs to run the benchmark in, one after another.
+  //   jvmArgs - the options of the child VMs.
+  //   runBenchArgs - the options of RunBench in the child VMs.
+  //   formatter - the formatter of results used by the child VMs.
+  public ForkedBenchmark(String benchName, int forkCount, List<String> jvmArgs,
+                         List<String> runBenchArgs, ResultFormatter formatter) {
+    if (forkCount < 1) {
+      throw new IllegalArgumentException("The number of forks must be positive: " + forkCount);
+    }
+    this.benchName = benchName;
+    this.forkCount = forkCount;
+    this.jvmArgs = jvmArgs;
+    this.runBenchArgs = runBenchArgs;
+    this.formatter = formatter;
+  }
+
+  // Return the command running the benchmark in a child VM.
+  private List<String> getCommand() {
+    List<String> command = new ArrayList<String>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "java");
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(RunBench.class.getName());
+    command.addAll(runBenchArgs);
+    // A child VM exits when a benchmark times out so that the next fork starts cleanly.
+    command.add("--exit_on_timeout");
+    command.add(benchName);
+    return command;
+  }
+
+  public Result[] run() {
+    SimpleLogger log = SimpleLogger.getInstance();
+    Map<String, Result> results = new LinkedHashMap<String, Result>();
+    failedForks = 0;
+    for (int fork = 0; fork < forkCount; ++fork) {
+      List<String> command = getCommand();
+      log.debug("Running fork " + (fork + 1) + " of " + forkCount + ": " + command);
+      try {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        process.getOutputStream().close();
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.equals(formatter.getHeader())) {
+            // The header has been printed by the parent.
+            continue;
+          }
+          Matcher matcher = RESULT_FORMAT.matcher(line);
+          if (formatter.isStreaming() || !matcher.matches()) {
+            // Records or output of the benchmark itself.
+            System.out.println(line);
+            System.out.flush();
+            continue;
+          }
+          Result result = results.get(matcher.group(1));
+          if (result == null) {
+            result = new Result(matcher.group(1));
+            results.put(result.getID(), result);
+          }
+          result.forkMeans.add(Double.valueOf(matcher.group(2)));
+          result.lastLine = line;
+        }
+        reader.close();
+        int exitCode = process.waitFor();
+        if (exitCode == Watchdog.TIMEOUT_EXIT_CODE) {
+          log.error("Fork " + (fork + 1) + " of " + benchName + " timed out");
+          ++failedForks;
+        } else if (exitCode != 0) {
+          log.error("Fork " + (fork + 1) + " of " + benchName + " exited with " + exitCode);
+          ++failedForks;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to run a fork of " + benchName, e);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return results.values().toArray(new Result[results.size()]);
+  }
+
+  // Return the number of forks which failed, e.g. because the verification failed.
+  public int getFailedForkCount() {
+    return failedForks;
+  }
+}
@@ -27,4 +27,12 @@ public @interface IterationsAnnotation {
 
   // <=0: means we need to calibrate, others: no calibration and use this as iteration count
   int iterations() default 0;
+
+  // The number of operations done by one iteration of the method, e.g. the number of map
+  // accesses. Results are also reported per operation.
+  int operationsPerInvocation() default 1;
+
+  // >0: the number of bytes processed by one iteration of the method. Results are also
+  // reported as bytes per second.
+  long bytesPerInvocation() default 0;
 }
@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.util.Arrays;
+
+/*
+ * LatencyHistogram records non-negative values, e.g. times in ns, into log-bucketed counts
+ * in the manner of HdrHistogram.
+ *
+ * Values lower than SUB_BUCKET_COUNT are recorded exactly. Greater values are recorded into
+ * the bucket of their power of two, split into SUB_BUCKET_COUNT / 2 linear sub-buckets, so
+ * a recorded value is within 1 / (SUB_BUCKET_COUNT / 2) (0.8%) of the value reported for it.
+ * The counts cover all long values and are allocated by the constructor: recording does not
+ * allocate, so it does not cause garbage collections while a benchmark is timed.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 8;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  // One bucket per power of two from SUB_BUCKET_COUNT to Long.MAX_VALUE.
+  private static final int BUCKET_COUNT = Long.SIZE - 1 - SUB_BUCKET_BITS;
+
+  private final long[] counts = new long[SUB_BUCKET_COUNT + BUCKET_COUNT * SUB_BUCKET_HALF_COUNT];
+  private long totalCount = 0;
+  private long minValue = Long.MAX_VALUE;
+  private long maxValue = 0;
+
+  // Record a value. Negative values are recorded as 0.
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    ++counts[getIndex(value)];
+    ++totalCount;
+    minValue = Math.min(minValue, value);
+    maxValue = Math.max(maxValue, value);
+  }
+
+  // Add the values recorded by another histogram to this histogram.
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; ++i) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    minValue = Math.min(minValue, other.minValue);
+    maxValue = Math.max(maxValue, other.maxValue);
+  }
+
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    minValue = Long.MAX_VALUE;
+    maxValue = 0;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMin() {
+    return totalCount == 0 ? 0 : minValue;
+  }
+
+  public long getMax() {
+    return maxValue;
+  }
+
+  // Return the value at the percentile: the highest value of the sub-bucket containing
+  // the value at the rank ceil(percentile / 100 * count), bounded by the recorded extremes.
+  // Arguments:
+  //   percentile - a percentile in the range [0, 100].
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+    long cumulative = 0;
+    for (int i = 0; i < counts.length; ++i) {
+      cumulative += counts[i];
+      if (cumulative >= rank) {
+        return Math.max(minValue, Math.min(maxValue, getHighestValue(i)));
+      }
+    }
+    return maxValue;
+  }
+
+  private static int getIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - (SUB_BUCKET_BITS - 1);
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT + subBucket;
+  }
+
+  // Return the highest value recorded into the counter of the index.
+  private static long getHighestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int bucket = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT;
+    int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT;
+    int shift = bucket + 1;
+    long lowest = (long) (SUB_BUCKET_HALF_COUNT + subBucket) << shift;
+    return lowest + ((1L << shift) - 1);
+  }
+}
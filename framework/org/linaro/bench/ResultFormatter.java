@@ -0,0 +1,290 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * ResultFormatter converts results of benchmarking methods to the lines printed by RunBench.
+ *
+ *    - TEXT is the human readable format of Result.toString(). The results of a benchmark
+ *      are printed after it has been run, sorted by their IDs.
+ *
+ *    - JSONL prints one JSON object per result.
+ *
+ *    - CSV prints one row per result, after a header row.
+ *
+ * The machine readable formats are streamed: a record is printed as soon as a method has been
+ * run. Their fields are:
+ *
+ *    id, iterations, samples, total_ns, ns_per_iteration, min_ns, median_ns, max_ns,
+ *    stddev_ns, ops_per_iteration, ns_per_op, ops_per_s, bytes_per_s,
+ *    allocated_bytes_per_iteration, gc_count_per_iteration, gc_time_ms_per_iteration,
+ *    warmup_compilation_ms, compilation_ms, jit_samples, jit_reruns, threads,
+ *    latency_p50_ns, latency_p90_ns, latency_p99_ns, latency_p999_ns, latency_max_ns,
+ *    baseline_ns, seed, status
+ *
+ * where min_ns, median_ns, max_ns and stddev_ns are times per iteration. The latency fields
+ * are set in the latency mode of RunBench. baseline_ns is the empty invocation time subtracted
+ * from each timed call of the method. seed is the seed of the random order of the benchmarks
+ * and their methods, given with --shuffle or generated for --interleave; the TEXT format
+ * prints it in the header line '# shuffle seed: <seed>'. status is "ok", or "TIMEOUT" for
+ * a benchmarking method cancelled by the watchdog, whose other fields are absent. An operation
+ * is a part of an iteration declared with IterationsAnnotation.operationsPerInvocation.
+ * A field is null in JSON and empty in CSV when it does not apply to the result or
+ * the runtime does not provide it.
+ */
+abstract class ResultFormatter {
+  private static final String STATUS_OK = "ok";
+  private static final String STATUS_TIMEOUT = "TIMEOUT";
+
+  // Create a formatter.
+  // Arguments:
+  //   name - "text", "jsonl" or "csv".
+  public static ResultFormatter create(String name) {
+    if (name.equals("text")) {
+      return new TextFormatter();
+    } else if (name.equals("jsonl")) {
+      return new JsonLinesFormatter();
+    } else if (name.equals("csv")) {
+      return new CsvFormatter();
+    }
+    throw new IllegalArgumentException("Unknown result format: " + name);
+  }
+
+  // Return whether results are printed as soon as they are measured.
+  public abstract boolean isStreaming();
+
+  // Return the line printed before the results, or null if there is none.
+  public String getHeader() {
+    return null;
+  }
+
+  public abstract String format(Benchmark.Result result);
+
+  public abstract String format(ConcurrentBenchmark.Result result);
+
+  // Format the result of a benchmarking method which timed out.
+  // Arguments:
+  //   id - the benchmarking method, or the benchmark if no method was running.
+  public abstract String formatTimeout(String id);
+
+  private static final class TextFormatter extends ResultFormatter {
+    @Override
+    public boolean isStreaming() {
+      return false;
+    }
+
+    @Override
+    public String getHeader() {
+      Long seed = Benchmark.getShuffleSeed();
+      return seed == null ? null : "# shuffle seed: " + seed;
+    }
+
+    @Override
+    public String format(Benchmark.Result result) {
+      return result.toString();
+    }
+
+    @Override
+    public String format(ConcurrentBenchmark.Result result) {
+      return result.toString();
+    }
+
+    @Override
+    public String formatTimeout(String id) {
+      return String.format("%-40s%s", id + ": ", STATUS_TIMEOUT);
+    }
+  }
+
+  private abstract static class RecordFormatter extends ResultFormatter {
+    protected static final String[] FIELDS = {
+      "id", "iterations", "samples", "total_ns", "ns_per_iteration", "min_ns", "median_ns",
+      "max_ns", "stddev_ns", "ops_per_iteration", "ns_per_op", "ops_per_s", "bytes_per_s",
+      "allocated_bytes_per_iteration", "gc_count_per_iteration", "gc_time_ms_per_iteration",
+      "warmup_compilation_ms", "compilation_ms", "jit_samples", "jit_reruns", "threads",
+      "latency_p50_ns", "latency_p90_ns", "latency_p99_ns", "latency_p999_ns", "latency_max_ns",
+      "baseline_ns", "seed", "status"
+    };
+
+    @Override
+    public boolean isStreaming() {
+      return true;
+    }
+
+    @Override
+    public String format(Benchmark.Result result) {
+      return formatRecord(getValues(result));
+    }
+
+    @Override
+    public String format(ConcurrentBenchmark.Result result) {
+      return formatRecord(getValues(result));
+    }
+
+    @Override
+    public String formatTimeout(String id) {
+      return formatRecord(getTimeoutValues(id));
+    }
+
+    // Format the values of FIELDS. Null values are absent values.
+    protected abstract String formatRecord(Object[] values);
+
+    // Return the values of FIELDS for a result of a benchmarking method.
+    protected static Object[] getValues(Benchmark.Result result) {
+      long totalNs = 0;
+      for (long duration : result.getDurations()) {
+        totalNs += duration;
+      }
+      Long compilationMs = 0L;
+      for (long sampleCompilationMs : result.getCompilationTimeMs()) {
+        if (sampleCompilationMs == RuntimeMetrics.UNAVAILABLE) {
+          compilationMs = null;
+          break;
+        }
+        compilationMs += sampleCompilationMs;
+      }
+      Object[] latencies = new Object[Benchmark.Result.LATENCY_PERCENTILES.length + 1];
+      if (result.hasLatencies()) {
+        long[] values = result.getLatencies();
+        for (int i = 0; i < values.length; ++i) {
+          latencies[i] = values[i];
+        }
+      }
+      return new Object[] {
+        result.getID(), result.getIterations(), result.getSampleCount(), totalNs,
+        result.getMean(), result.getMin(), result.getMedian(), result.getMax(),
+        result.getStandardDeviation(), result.getOperationsPerIteration(),
+        result.getNsPerOperation(), result.getOperationsPerSecond(), result.getBytesPerSecond(),
+        result.getAllocatedBytesPerIteration(), result.getGcCountPerIteration(),
+        result.getGcTimeMsPerIteration(), available(result.getWarmupCompilationTimeMs()),
+        compilationMs, result.getJitActivitySampleCount(), result.getJitReruns(), null,
+        latencies[0], latencies[1], latencies[2], latencies[3], latencies[4],
+        result.getBaselineNs(), Benchmark.getShuffleSeed(), STATUS_OK
+      };
+    }
+
+    // Return the values of FIELDS for a result of a benchmarking method run on several threads.
+    // The per iteration statistics are those of the time per iteration of the threads.
+    protected static Object[] getValues(ConcurrentBenchmark.Result result) {
+      double[] latencies = result.getThreadLatencies();
+      double min = Double.MAX_VALUE;
+      double max = 0.0;
+      for (double latency : latencies) {
+        min = Math.min(min, latency);
+        max = Math.max(max, latency);
+      }
+      double mean = Statistics.mean(latencies);
+      return new Object[] {
+        result.getID(), result.getIterations(), null, result.getWallTime(), mean, min, null, max,
+        Statistics.standardDeviation(latencies), result.getOperationsPerIteration(),
+        mean / result.getOperationsPerIteration(), result.getOperationsPerSecond(), null,
+        null, null, null, null, null, null, null, result.getThreadCount(),
+        null, null, null, null, null, null, Benchmark.getShuffleSeed(), STATUS_OK
+      };
+    }
+
+    // Return the values of FIELDS for a benchmarking method which timed out.
+    protected static Object[] getTimeoutValues(String id) {
+      Object[] values = new Object[FIELDS.length];
+      values[0] = id;
+      values[FIELDS.length - 1] = STATUS_TIMEOUT;
+      return values;
+    }
+
+    private static Long available(long counter) {
+      return counter == RuntimeMetrics.UNAVAILABLE ? null : counter;
+    }
+
+    // Return the string of a number, or null if the value is absent or not a number.
+    protected static String formatNumber(Object value) {
+      if (value == null) {
+        return null;
+      }
+      if (value instanceof Double) {
+        double number = (Double) value;
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+          return null;
+        }
+      }
+      return value.toString();
+    }
+  }
+
+  private static final class JsonLinesFormatter extends RecordFormatter {
+    @Override
+    protected String formatRecord(Object[] values) {
+      List<String> members = new ArrayList<String>();
+      for (int i = 0; i < FIELDS.length; ++i) {
+        String value;
+        if (values[i] instanceof String) {
+          value = quote((String) values[i]);
+        } else {
+          value = formatNumber(values[i]);
+        }
+        members.add(quote(FIELDS[i]) + ":" + (value == null ? "null" : value));
+      }
+      return "{" + String.join(",", members) + "}";
+    }
+
+    private static String quote(String str) {
+      StringBuilder quoted = new StringBuilder("\"");
+      for (char c : str.toCharArray()) {
+        if (c == '"' || c == '\\') {
+          quoted.append('\\').append(c);
+        } else if (c < 0x20) {
+          quoted.append(String.format("\\u%04x", (int) c));
+        } else {
+          quoted.append(c);
+        }
+      }
+      return quoted.append('"').toString();
+    }
+  }
+
+  private static final class CsvFormatter extends RecordFormatter {
+    @Override
+    public String getHeader() {
+      return String.join(",", FIELDS);
+    }
+
+    @Override
+    protected String formatRecord(Object[] values) {
+      List<String> cells = new ArrayList<String>();
+      for (Object value : values) {
+        String cell;
+        if (value instanceof String) {
+          cell = quote((String) value);
+        } else {
+          cell = formatNumber(value);
+        }
+        cells.add(cell == null ? "" : cell);
+      }
+      return String.join(",", cells);
+    }
+
+    // Benchmark IDs contain commas when they have several parameters.
+    private static String quote(String str) {
+      if (str.indexOf(',') == -1 && str.indexOf('"') == -1) {
+        return str;
+      }
+      return "\"" + str.replace("\"", "\"\"") + "\"";
+    }
+  }
+}
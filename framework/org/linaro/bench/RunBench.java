@@ -17,12 +17,19 @@
 
 package org.linaro.bench;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 public class RunBench {
   private SimpleLogger log;
+  private ResultFormatter formatter = ResultFormatter.create("text");
+  // The time budget of the run, or null if there is none.
+  private TimeBudget timeBudget = null;
+  // The watchdog of the benchmarks, or null if they are run without timeout.
+  private Watchdog watchdog = null;
 
   public RunBench() {
     this.log = SimpleLogger.getInstance();
@@ -34,13 +41,30 @@ public class RunBench {
 
   public int runBenchSet(Benchmark benchmark, boolean verify) {
     try {
-      Benchmark.Result[] results = benchmark.run();
+      ResultListener<Benchmark.Result> listener = null;
+      if (formatter.isStreaming()) {
+        listener = new ResultListener<Benchmark.Result>() {
+          @Override
+          public void onResult(Benchmark.Result result) {
+            printResult(formatter.format(result));
+          }
+        };
+      }
+      Benchmark.Result[] results = benchmark.run(listener);
+      if (timeBudget != null) {
+        for (Benchmark.Result result : results) {
+          timeBudget.record(result);
+        }
+      }
       int verifyFailures = 0;
       if (verify) {
         verifyFailures = benchmark.verify();
       }
-      for (Benchmark.Result result : results) {
-        System.out.println(result.toString());
+      benchmark.teardown();
+      if (!formatter.isStreaming()) {
+        for (Benchmark.Result result : results) {
+          printResult(formatter.format(result));
+        }
       }
       if (verifyFailures > 0) {
         return 1;
@@ -53,10 +77,65 @@ public class RunBench {
     return 0;
   }
 
+  public int runConcurrentBenchSet(ConcurrentBenchmark benchmark, boolean verify) {
+    try {
+      ResultListener<ConcurrentBenchmark.Result> listener = null;
+      if (formatter.isStreaming()) {
+        listener = new ResultListener<ConcurrentBenchmark.Result>() {
+          @Override
+          public void onResult(ConcurrentBenchmark.Result result) {
+            printResult(formatter.format(result));
+          }
+        };
+      }
+      ConcurrentBenchmark.Result[] results = benchmark.run(listener);
+      int verifyFailures = 0;
+      if (verify) {
+        verifyFailures = benchmark.verify();
+      }
+      benchmark.teardown();
+      if (!formatter.isStreaming()) {
+        for (ConcurrentBenchmark.Result result : results) {
+          printResult(formatter.format(result));
+        }
+      }
+      if (verifyFailures > 0) {
+        return 1;
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return 1;
+    }
+    return 0;
+  }
+
+  // Print a result line and flush it, so that it can be read while benchmarks are running.
+  private static void printResult(String line) {
+    System.out.println(line);
+    System.out.flush();
+  }
+
+  public int runForkedBenchSet(ForkedBenchmark benchmark) {
+    try {
+      ForkedBenchmark.Result[] results = benchmark.run();
+      for (ForkedBenchmark.Result result : results) {
+        System.out.println(result.toString());
+      }
+      if (benchmark.getFailedForkCount() > 0) {
+        return 1;
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return 1;
+    }
+    return 0;
+  }
+
   public static final String helpMessage =
       "Usage: java org.linaro.bench.RunBench [OPTIONS] [Benchmark_name|Benchmark_specification]*\n"
       + "\n"
       + "Benchmark_specification: <benchmark_class_name>[:<benchmark_method>:<iterations>]+\n"
+      + "<benchmark_method> can be followed by parameter values: [<param>=<value>(,...)*]\n"
       + "OPTIONS:\n"
       + "\t--help               Print this error message.\n"
       + "\t--verbose            Be verbose.\n"
@@ -68,6 +147,115 @@ public class RunBench {
       + "\t                     (default: "
       + Benchmark.DEFAULT_TARGET_RUNNING_TIME_MS
       + ")\n"
+      + "\t--samples <count>    Collect <count> timed samples for each benchmark method and\n"
+      + "\t                     report their statistics. (default: "
+      + Benchmark.DEFAULT_SAMPLES_COUNT
+      + ")\n"
+      + "\t--adaptive_warmup    Run warmup batches of a tenth of the iterations until\n"
+      + "\t                     the last batches are stable instead of a single batch.\n"
+      + "\t--warmup_cv <percent>\n"
+      + "\t                     The coefficient of variation of the last warmup batches\n"
+      + "\t                     to consider a method stable. (default: "
+      + Benchmark.DEFAULT_WARMUP_CV_PERCENT
+      + ")\n"
+      + "\t--max_warmup_time <time in ms>\n"
+      + "\t                     The maximum time of the adaptive warmup. (default: "
+      + Benchmark.DEFAULT_MAX_WARMUP_TIME_MS
+      + ")\n"
+      + "\t--latency            Time the iterations of the samples one by one and report\n"
+      + "\t                     the percentiles of their latencies, without the timer\n"
+      + "\t                     overhead. Not supported with --threads.\n"
+      + "\t--latency_batch <iterations>\n"
+      + "\t                     Same as --latency with batches of <iterations> timed at once,\n"
+      + "\t                     for iterations too short for the timer. (default: "
+      + Benchmark.DEFAULT_LATENCY_BATCH
+      + ")\n"
+      + "\t--shuffle <seed>     Run the benchmarks, their parameter combinations and their\n"
+      + "\t                     methods in a random order generated from <seed>. The seed\n"
+      + "\t                     is printed with the results. The methods of a benchmark\n"
+      + "\t                     specification keep their order.\n"
+      + "\t--interleave         Warm up the methods of a benchmark, then run their samples\n"
+      + "\t                     in rounds of one sample per method, in a random order. Without\n"
+      + "\t                     --shuffle, the seed is random. Not supported with --threads\n"
+      + "\t                     or --time_budget.\n"
+      + "\t--gc_stats           Print the bytes allocated by the benchmark thread, the number\n"
+      + "\t                     of GCs and the GC time per iteration, when the runtime\n"
+      + "\t                     provides them.\n"
+      + "\t--jit_stats          Print the number of samples during which code was compiled or\n"
+      + "\t                     classes were loaded, and the JIT compilation time during\n"
+      + "\t                     the warmup and the samples.\n"
+      + "\t--jit_reruns <count> Run a sample again when code was compiled or classes were\n"
+      + "\t                     loaded during it, at most <count> times per method.\n"
+      + "\t--calibration_cache <file>\n"
+      + "\t                     Reuse the iteration counts stored in the file instead of\n"
+      + "\t                     calibrating, and store new calibrations into it. A cached\n"
+      + "\t                     count is recalibrated when the measured time differs from\n"
+      + "\t                     the target running time by more than the tolerance.\n"
+      + "\t--calibration_cache_tolerance <percent>\n"
+      + "\t                     (default: "
+      + CalibrationCache.DEFAULT_TOLERANCE_PERCENT
+      + ")\n"
+      + "\t--time_budget <time in s>\n"
+      + "\t                     Fit the run into the wall-clock time. The time is split\n"
+      + "\t                     between the benchmark methods, which get more samples when\n"
+      + "\t                     their samples varied in previous runs. Benchmarks which do\n"
+      + "\t                     not fit into the time left are skipped.\n"
+      + "\t--time_budget_history <file>\n"
+      + "\t                     Read and update the variance of the methods in the file.\n"
+      + "\t--timeout_factor <factor>\n"
+      + "\t                     Cancel a benchmark when its creation, the calibration or\n"
+      + "\t                     the run of a method, or its verification takes <factor>\n"
+      + "\t                     times the expected time, print the stack of the benchmark\n"
+      + "\t                     and its result as TIMEOUT, and run the next benchmark. If\n"
+      + "\t                     the benchmark does not stop, exit with the code "
+      + Watchdog.TIMEOUT_EXIT_CODE
+      + ".\n"
+      + "\t                     0 runs the benchmarks without timeout. (default: "
+      + Watchdog.DEFAULT_TIMEOUT_FACTOR
+      + ")\n"
+      + "\t--min_timeout <time in ms>\n"
+      + "\t                     The shortest timeout. (default: "
+      + Watchdog.DEFAULT_MIN_TIMEOUT_MS
+      + ")\n"
+      + "\t--exit_on_timeout    Exit with the code "
+      + Watchdog.TIMEOUT_EXIT_CODE
+      + " when a benchmark times out instead of\n"
+      + "\t                     running the next one. Used by child VMs of --fork.\n"
+      + "\t--format <text|jsonl|csv>\n"
+      + "\t                     Set the format of results. jsonl and csv print one record per\n"
+      + "\t                     benchmark method as soon as it has been run, with the\n"
+      + "\t                     iterations, the times and the GC and JIT counters.\n"
+      + "\t                     (default: text)\n"
+      + "\t--param <name>=<value>[,<value>]*\n"
+      + "\t                     Run benchmarks having the parameter <name> with the provided\n"
+      + "\t                     values instead of the values of its annotation. Can be\n"
+      + "\t                     repeated for several parameters.\n"
+      + "\t--invoker <reflection|methodhandle|lambda>\n"
+      + "\t                     Set how benchmark methods are called. (default: lambda)\n"
+      + "\t--invoker_overhead   Print the fixed cost of a call for each invoker and exit.\n"
+      + "\t--timer_calibration  Print the latency and granularity of the timer and the time\n"
+      + "\t                     of an empty invocation, which is subtracted from measured\n"
+      + "\t                     times, and exit.\n"
+      + "\t--reject_short_samples\n"
+      + "\t                     Fail benchmark methods whose samples are too short for\n"
+      + "\t                     the timer instead of running them with more iterations.\n"
+      + "\t--threads <count>    Run each benchmark method on <count> threads at the same time,\n"
+      + "\t                     each thread with its own benchmark instance, and report\n"
+      + "\t                     the per-thread latency and the aggregate throughput.\n"
+      + "\t--threads_sweep <count>[,<count>]*\n"
+      + "\t                     Same as --threads for each of the provided thread counts.\n"
+      + "\t--fork <count>       Run each benchmark in <count> child VMs, one after another,\n"
+      + "\t                     with the other options. The results of several forks are\n"
+      + "\t                     aggregated. Only supported on host VMs.\n"
+      + "\t--fork_jvm_args <args>\n"
+      + "\t                     Space separated options of the child VMs.\n"
+      + "\t--server             Keep running and read benchmark names or specifications\n"
+      + "\t                     separated by spaces from the standard input, one request\n"
+      + "\t                     per line. Benchmarks are kept between requests so their\n"
+      + "\t                     calibration is reused. '--reset' drops them and '--quit'\n"
+      + "\t                     exits.\n"
+      + "\t--server_port <port> Same as --server with requests read from clients connected\n"
+      + "\t                     to the loopback port. 0 selects a free port.\n"
       + "\t--calibration_time   <time in ms>\n"
       + "\t                     Set the time for benchmark calibration.\n"
       + "\t                     If it is not provided the time is calculated based on the target\n"
@@ -83,10 +271,25 @@ public class RunBench {
   public int parseCmdlineAndRun(String[] args) {
     int errors = 0;
     boolean verify = true;  // Verify all benchmark results by default.
-    List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+    List<Integer> threadCounts = new ArrayList<Integer>();
+    int forkCount = 0;
+    List<String> forkJvmArgs = new ArrayList<String>();
+    // The options passed to RunBench in child VMs.
+    List<String> forkRunBenchArgs = new ArrayList<String>();
+    boolean server = false;
+    int serverPort = -1;
+    boolean latency = false;
+    double timeBudgetSeconds = 0;
+    String timeBudgetHistory = null;
+    double timeoutFactor = Watchdog.DEFAULT_TIMEOUT_FACTOR;
+    long minTimeoutMs = Watchdog.DEFAULT_MIN_TIMEOUT_MS;
+    boolean exitOnTimeout = false;
+    boolean shuffle = false;
+    boolean interleave = false;
 
     int argIndex = 0;
     for (argIndex = 0; argIndex < args.length && args[argIndex].startsWith("--"); ++argIndex) {
+      int optionIndex = argIndex;
       String option = args[argIndex].substring(2);
       if (option.equals("help")) {
         System.out.println(helpMessage);
@@ -114,6 +317,185 @@ public class RunBench {
         } else {
           log.fatal("Require time.");
         }
+      } else if (option.equals("samples")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setSamplesCount(Integer.valueOf(args[argIndex]));
+        } else {
+          log.fatal("Require the number of samples.");
+        }
+      } else if (option.equals("adaptive_warmup")) {
+        Benchmark.setAdaptiveWarmup(true);
+      } else if (option.equals("warmup_cv")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setWarmupCv(Double.valueOf(args[argIndex]));
+        } else {
+          log.fatal("Require a coefficient of variation.");
+        }
+      } else if (option.equals("max_warmup_time")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setMaxWarmupTime(Long.valueOf(args[argIndex]));
+        } else {
+          log.fatal("Require time.");
+        }
+      } else if (option.equals("latency")) {
+        Benchmark.setLatencyBatch(Benchmark.DEFAULT_LATENCY_BATCH);
+        latency = true;
+      } else if (option.equals("latency_batch")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setLatencyBatch(Integer.valueOf(args[argIndex]));
+          latency = true;
+        } else {
+          log.fatal("Require the number of iterations.");
+        }
+      } else if (option.equals("shuffle")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setShuffleSeed(Long.valueOf(args[argIndex]));
+          shuffle = true;
+        } else {
+          log.fatal("Require a seed.");
+        }
+      } else if (option.equals("interleave")) {
+        Benchmark.setInterleaved(true);
+        interleave = true;
+      } else if (option.equals("gc_stats")) {
+        Benchmark.setGcStats(true);
+      } else if (option.equals("jit_stats")) {
+        Benchmark.setJitStats(true);
+      } else if (option.equals("jit_reruns")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setMaxJitReruns(Integer.valueOf(args[argIndex]));
+        } else {
+          log.fatal("Require the number of reruns.");
+        }
+      } else if (option.equals("calibration_cache")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setCalibrationCache(args[argIndex]);
+        } else {
+          log.fatal("Require a file.");
+        }
+      } else if (option.equals("calibration_cache_tolerance")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setCalibrationCacheTolerance(Double.valueOf(args[argIndex]));
+        } else {
+          log.fatal("Require a tolerance.");
+        }
+      } else if (option.equals("time_budget")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          timeBudgetSeconds = Double.valueOf(args[argIndex]);
+        } else {
+          log.fatal("Require time.");
+        }
+      } else if (option.equals("time_budget_history")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          timeBudgetHistory = args[argIndex];
+        } else {
+          log.fatal("Require a file.");
+        }
+      } else if (option.equals("timeout_factor")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          timeoutFactor = Double.valueOf(args[argIndex]);
+        } else {
+          log.fatal("Require a factor.");
+        }
+      } else if (option.equals("min_timeout")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          minTimeoutMs = Long.valueOf(args[argIndex]);
+        } else {
+          log.fatal("Require time.");
+        }
+      } else if (option.equals("exit_on_timeout")) {
+        exitOnTimeout = true;
+      } else if (option.equals("format")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          formatter = ResultFormatter.create(args[argIndex]);
+        } else {
+          log.fatal("Require a format.");
+        }
+      } else if (option.equals("param")) {
+        argIndex++;
+        if (argIndex < args.length && args[argIndex].indexOf('=') > 0) {
+          String[] nameAndValues = args[argIndex].split("=", 2);
+          Benchmark.setParamValues(nameAndValues[0], nameAndValues[1].split(","));
+        } else {
+          log.fatal("Require a parameter name and values.");
+        }
+      } else if (option.equals("invoker")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          Benchmark.setInvokerKind(args[argIndex]);
+        } else {
+          log.fatal("Require an invoker.");
+        }
+      } else if (option.equals("timer_calibration")) {
+        System.out.println(Benchmark.getTimerCalibrationReport());
+        System.exit(0);
+      } else if (option.equals("reject_short_samples")) {
+        Benchmark.setRejectShortSamples(true);
+      } else if (option.equals("invoker_overhead")) {
+        System.out.println(Benchmark.getInvokerOverheadReport());
+        System.exit(0);
+      } else if (option.equals("threads")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          threadCounts.clear();
+          threadCounts.add(Integer.valueOf(args[argIndex]));
+        } else {
+          log.fatal("Require the number of threads.");
+        }
+      } else if (option.equals("threads_sweep")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          threadCounts.clear();
+          for (String count : args[argIndex].split(",")) {
+            threadCounts.add(Integer.valueOf(count));
+          }
+        } else {
+          log.fatal("Require a list of numbers of threads.");
+        }
+      } else if (option.equals("fork")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          forkCount = Integer.valueOf(args[argIndex]);
+        } else {
+          log.fatal("Require the number of forks.");
+        }
+        continue;
+      } else if (option.equals("fork_jvm_args")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          forkJvmArgs.clear();
+          for (String jvmArg : args[argIndex].trim().split("\\s+")) {
+            if (!jvmArg.isEmpty()) {
+              forkJvmArgs.add(jvmArg);
+            }
+          }
+        } else {
+          log.fatal("Require options of the child VMs.");
+        }
+        continue;
+      } else if (option.equals("server")) {
+        server = true;
+      } else if (option.equals("server_port")) {
+        argIndex++;
+        if (argIndex < args.length) {
+          server = true;
+          serverPort = Integer.valueOf(args[argIndex]);
+        } else {
+          log.fatal("Require a port.");
+        }
       } else if (option.equals("noverify")) {
         verify = false;
       } else {
@@ -121,27 +503,181 @@ public class RunBench {
         System.out.println(helpMessage);
         System.exit(1);
       }
+      for (int i = optionIndex; i <= argIndex; ++i) {
+        forkRunBenchArgs.add(args[i]);
+      }
     }
 
-    for (; argIndex < args.length; ++argIndex) {
-      benchmarks.add(Benchmark.fromString(args[argIndex]));
+    if (interleave) {
+      if (!threadCounts.isEmpty() || timeBudgetSeconds > 0) {
+        log.fatal("The interleaved mode cannot be used with --threads or --time_budget.");
+      }
+      if (!shuffle) {
+        long seed = new Random().nextLong();
+        Benchmark.setShuffleSeed(seed);
+        // Child VMs run the methods in the same order.
+        forkRunBenchArgs.add("--shuffle");
+        forkRunBenchArgs.add(Long.toString(seed));
+      }
     }
 
-    if (benchmarks.size() == 0) {
-      // No benchmarks were specified on the command line. Run all
-      // benchmarks available.
-      for (int i = 0; i < BenchmarkList.benchmarkList.length; i++) {
-        benchmarks.add(Benchmark.fromString(BenchmarkList.benchmarkList[i]));
+    if (formatter.getHeader() != null) {
+      printResult(formatter.getHeader());
+    }
+
+    if (timeBudgetSeconds > 0) {
+      if (server || forkCount > 0 || !threadCounts.isEmpty()) {
+        log.fatal("The time budget cannot be used with --server, --fork or --threads.");
+      }
+      timeBudget = new TimeBudget((long) (timeBudgetSeconds * 1e9));
+      if (timeBudgetHistory != null) {
+        timeBudget.setHistory(timeBudgetHistory);
+      }
+    } else if (timeBudgetHistory != null) {
+      log.fatal("Require --time_budget with --time_budget_history.");
+    }
+
+    if (server) {
+      if (forkCount > 0 || !threadCounts.isEmpty() || argIndex < args.length) {
+        log.fatal("The server mode cannot be used with benchmarks, --fork or --threads.");
+      }
+      try {
+        BenchServer benchServer = new BenchServer(this, verify);
+        if (serverPort < 0) {
+          benchServer.serve();
+        } else {
+          benchServer.serve(serverPort);
+        }
+      } catch (IOException e) {
+        log.fatal("Server failed: " + e);
+      }
+      return 0;
+    }
+
+    List<String> benchNames = getBenchNames(args, argIndex);
+    Benchmark.shuffle(benchNames);
+
+    if (forkCount > 0) {
+      return runForked(benchNames, forkCount, forkJvmArgs, forkRunBenchArgs);
+    }
+
+    if (!threadCounts.isEmpty()) {
+      if (latency) {
+        log.fatal("The latency mode cannot be used with --threads.");
       }
+      errors = runConcurrently(benchNames, threadCounts, verify);
+      Benchmark.saveCalibrationCache();
+      return errors;
+    }
+
+    // Run the benchmarks. Each benchmark is created, calibrated, run and verified before
+    // the next one is created, so that only the data of one benchmark is live at a time and
+    // its results are printed as soon as possible.
+    // With the watchdog, each benchmark is run on a worker thread and the benchmarks left are
+    // run after a benchmark times out, unless it is still running.
+    if (timeoutFactor > 0) {
+      watchdog = new Watchdog(timeoutFactor, minTimeoutMs);
+      Benchmark.setWatchdog(watchdog);
     }
-    // Run the benchmarks.
-    for (int i = 0; i < benchmarks.size(); i++) {
-      if (runBenchSet(benchmarks.get(i), verify) != 0) {
+    if (timeBudget != null) {
+      timeBudget.start(benchNames);
+    }
+    for (final String benchName : benchNames) {
+      if (timeBudget != null && timeBudget.isSpent()) {
+        timeBudget.skip(benchName);
+        continue;
+      }
+      final boolean verifyBenchmark = verify;
+      final int[] failures = new int[1];
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          failures[0] = runBenchmark(benchName, verifyBenchmark);
+        }
+      };
+      String timedOut = null;
+      if (watchdog != null) {
+        timedOut = watchdog.run(benchName, task);
+      } else {
+        task.run();
+      }
+      if (timedOut != null) {
+        printResult(formatter.formatTimeout(timedOut));
+        if (watchdog.hasStuckWorker()) {
+          log.error("The benchmarks left are not run next to the benchmark still running.");
+          System.exit(Watchdog.TIMEOUT_EXIT_CODE);
+        }
+        if (exitOnTimeout) {
+          System.exit(Watchdog.TIMEOUT_EXIT_CODE);
+        }
+        errors++;
+      } else if (failures[0] != 0) {
         log.error("Test failed.");
         errors++;
       }
     }
+    Benchmark.saveCalibrationCache();
+    if (timeBudget != null) {
+      timeBudget.save();
+    }
+
+    return errors;
+  }
+
+  // Create, calibrate, run and verify the benchmark. Return 0 if it succeeded or the time
+  // budget skipped it.
+  private int runBenchmark(String benchName, boolean verify) {
+    Benchmark benchmark = Benchmark.fromStringWithoutCalibration(benchName);
+    if (timeBudget != null && !timeBudget.schedule(benchName, benchmark)) {
+      return 0;
+    }
+    benchmark.calibrateMethods();
+    return runBenchSet(benchmark, verify);
+  }
+
+  // Return the benchmarks provided on the command line starting from argIndex or, if none
+  // is provided, all available benchmarks.
+  private static List<String> getBenchNames(String[] args, int argIndex) {
+    List<String> benchNames = new ArrayList<String>();
+    for (; argIndex < args.length; ++argIndex) {
+      benchNames.add(args[argIndex]);
+    }
+    if (benchNames.isEmpty()) {
+      for (int i = 0; i < BenchmarkList.benchmarkList.length; i++) {
+        benchNames.add(BenchmarkList.benchmarkList[i]);
+      }
+    }
+    return benchNames;
+  }
 
+  // Run the benchmarks with each of the provided thread counts.
+  private int runConcurrently(List<String> benchNames, List<Integer> threadCounts,
+                              boolean verify) {
+    int errors = 0;
+    for (String benchName : benchNames) {
+      for (int threadCount : threadCounts) {
+        ConcurrentBenchmark benchmark = new ConcurrentBenchmark(benchName, threadCount);
+        if (runConcurrentBenchSet(benchmark, verify) != 0) {
+          log.error("Test failed.");
+          errors++;
+        }
+      }
+    }
+    return errors;
+  }
+
+  // Run each of the benchmarks in child VMs.
+  private int runForked(List<String> benchNames, int forkCount, List<String> jvmArgs,
+                        List<String> runBenchArgs) {
+    int errors = 0;
+    for (String benchName : benchNames) {
+      ForkedBenchmark benchmark =
+          new ForkedBenchmark(benchName, forkCount, jvmArgs, runBenchArgs, formatter);
+      if (runForkedBenchSet(benchmark) != 0) {
+        log.error("Test failed.");
+        errors++;
+      }
+    }
     return errors;
   }
 
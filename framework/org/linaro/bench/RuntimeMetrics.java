@@ -0,0 +1,268 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * RuntimeMetrics reads counters of the runtime from the management beans:
+ *
+ *    - the number of bytes allocated by the current thread, from
+ *      com.sun.management.ThreadMXBean.
+ *
+ *    - the number of garbage collections and the time spent in them, from
+ *      java.lang.management.GarbageCollectorMXBean.
+ *
+ *    - the time spent in JIT compilation, from java.lang.management.CompilationMXBean.
+ *
+ *    - the number of loaded classes, from java.lang.management.ClassLoadingMXBean.
+ *
+ * The beans are accessed with reflection because they are not available on all runtimes
+ * (e.g. Dalvik). When a counter is not available, UNAVAILABLE is returned.
+ */
+final class RuntimeMetrics {
+  public static final long UNAVAILABLE = -1;
+
+  private static Object threadBean;
+  private static Method getThreadAllocatedBytes;
+  private static List<Object> gcBeans;
+  private static Method getCollectionCount;
+  private static Method getCollectionTime;
+  private static Object compilationBean;
+  private static Method getTotalCompilationTime;
+  private static Object classLoadingBean;
+  private static Method getTotalLoadedClassCount;
+
+  static {
+    SimpleLogger log = SimpleLogger.getInstance();
+    Class<?> factory = null;
+    try {
+      factory = Class.forName("java.lang.management.ManagementFactory");
+    } catch (Throwable e) {
+      log.debug("Runtime metrics are not available: " + e);
+    }
+
+    if (factory != null) {
+      try {
+        Object bean = factory.getMethod("getThreadMXBean").invoke(null);
+        Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+        if (beanClass.isInstance(bean)
+            && (Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean)) {
+          beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+          getThreadAllocatedBytes = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+          threadBean = bean;
+        }
+      } catch (Throwable e) {
+        log.debug("Allocation metrics are not available: " + e);
+      }
+
+      try {
+        List<?> beans = (List<?>) factory.getMethod("getGarbageCollectorMXBeans").invoke(null);
+        Class<?> beanClass = Class.forName("java.lang.management.GarbageCollectorMXBean");
+        getCollectionCount = beanClass.getMethod("getCollectionCount");
+        getCollectionTime = beanClass.getMethod("getCollectionTime");
+        gcBeans = new ArrayList<Object>(beans);
+      } catch (Throwable e) {
+        log.debug("GC metrics are not available: " + e);
+      }
+
+      try {
+        // There is no compilation bean when the VM has no JIT compiler.
+        Object bean = factory.getMethod("getCompilationMXBean").invoke(null);
+        Class<?> beanClass = Class.forName("java.lang.management.CompilationMXBean");
+        if (bean != null
+            && (Boolean) beanClass.getMethod("isCompilationTimeMonitoringSupported").invoke(bean)) {
+          getTotalCompilationTime = beanClass.getMethod("getTotalCompilationTime");
+          compilationBean = bean;
+        }
+      } catch (Throwable e) {
+        log.debug("Compilation metrics are not available: " + e);
+      }
+
+      try {
+        Object bean = factory.getMethod("getClassLoadingMXBean").invoke(null);
+        Class<?> beanClass = Class.forName("java.lang.management.ClassLoadingMXBean");
+        getTotalLoadedClassCount = beanClass.getMethod("getTotalLoadedClassCount");
+        classLoadingBean = bean;
+      } catch (Throwable e) {
+        log.debug("Class loading metrics are not available: " + e);
+      }
+    }
+  }
+
+  private RuntimeMetrics() {
+  }
+
+  public static boolean isAllocationAvailable() {
+    return threadBean != null;
+  }
+
+  public static boolean isGcAvailable() {
+    return gcBeans != null;
+  }
+
+  public static boolean isCompilationAvailable() {
+    return compilationBean != null;
+  }
+
+  public static boolean isClassLoadingAvailable() {
+    return classLoadingBean != null;
+  }
+
+  // Return the number of bytes allocated by the current thread.
+  public static long getAllocatedBytes() {
+    if (threadBean == null) {
+      return UNAVAILABLE;
+    }
+    try {
+      return (Long) getThreadAllocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Return the number of garbage collections done by all collectors.
+  public static long getGcCount() {
+    return sumGcBeans(getCollectionCount);
+  }
+
+  // Return the time in ms spent in garbage collections by all collectors.
+  public static long getGcTimeMs() {
+    return sumGcBeans(getCollectionTime);
+  }
+
+  // Return the time in ms spent in JIT compilation.
+  public static long getCompilationTimeMs() {
+    return read(compilationBean, getTotalCompilationTime);
+  }
+
+  // Return the number of classes loaded since the start of the VM.
+  public static long getLoadedClassCount() {
+    return read(classLoadingBean, getTotalLoadedClassCount);
+  }
+
+  private static long read(Object bean, Method getter) {
+    if (bean == null) {
+      return UNAVAILABLE;
+    }
+    try {
+      return (Long) getter.invoke(bean);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static long sumGcBeans(Method getter) {
+    if (gcBeans == null) {
+      return UNAVAILABLE;
+    }
+    long sum = 0;
+    try {
+      for (Object bean : gcBeans) {
+        long value = (Long) getter.invoke(bean);
+        // Collectors return -1 when the value is undefined for them.
+        if (value > 0) {
+          sum += value;
+        }
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    return sum;
+  }
+
+  /*
+   * Counters records the differences of the runtime counters between calls of start() and
+   * stop() for each sample. Recording a sample again replaces its previous values.
+   * The allocated bytes are read last in start() and first in stop(), so that reading
+   * the other counters is not counted.
+   */
+  static final class Counters {
+    private long[] allocatedBytes;
+    private long[] gcCount;
+    private long[] gcTimeMs;
+    private long[] compilationTimeMs;
+    private long[] loadedClasses;
+
+    private long startAllocatedBytes;
+    private long startGcCount;
+    private long startGcTimeMs;
+    private long startCompilationTimeMs;
+    private long startLoadedClasses;
+
+    public Counters(int samples) {
+      allocatedBytes = new long[samples];
+      gcCount = new long[samples];
+      gcTimeMs = new long[samples];
+      compilationTimeMs = new long[samples];
+      loadedClasses = new long[samples];
+    }
+
+    public void start() {
+      startCompilationTimeMs = RuntimeMetrics.getCompilationTimeMs();
+      startLoadedClasses = RuntimeMetrics.getLoadedClassCount();
+      startGcCount = RuntimeMetrics.getGcCount();
+      startGcTimeMs = RuntimeMetrics.getGcTimeMs();
+      startAllocatedBytes = RuntimeMetrics.getAllocatedBytes();
+    }
+
+    public void stop(int sample) {
+      long endAllocatedBytes = RuntimeMetrics.getAllocatedBytes();
+      allocatedBytes[sample] = endAllocatedBytes - startAllocatedBytes;
+      gcCount[sample] = RuntimeMetrics.getGcCount() - startGcCount;
+      gcTimeMs[sample] = RuntimeMetrics.getGcTimeMs() - startGcTimeMs;
+      loadedClasses[sample] = RuntimeMetrics.getLoadedClassCount() - startLoadedClasses;
+      compilationTimeMs[sample] = RuntimeMetrics.getCompilationTimeMs() - startCompilationTimeMs;
+    }
+
+    // Return whether the JIT compiled code or classes were loaded during the sample.
+    public boolean hasJitActivity(int sample) {
+      return compilationTimeMs[sample] > 0 || loadedClasses[sample] > 0;
+    }
+
+    public long getAllocatedBytes() {
+      return RuntimeMetrics.isAllocationAvailable() ? sum(allocatedBytes) : UNAVAILABLE;
+    }
+
+    public long getGcCount() {
+      return RuntimeMetrics.isGcAvailable() ? sum(gcCount) : UNAVAILABLE;
+    }
+
+    public long getGcTimeMs() {
+      return RuntimeMetrics.isGcAvailable() ? sum(gcTimeMs) : UNAVAILABLE;
+    }
+
+    public long getCompilationTimeMs(int sample) {
+      return RuntimeMetrics.isCompilationAvailable() ? compilationTimeMs[sample] : UNAVAILABLE;
+    }
+
+    public long getLoadedClasses(int sample) {
+      return RuntimeMetrics.isClassLoadingAvailable() ? loadedClasses[sample] : UNAVAILABLE;
+    }
+
+    private static long sum(long[] values) {
+      long sum = 0;
+      for (long value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+  }
+}
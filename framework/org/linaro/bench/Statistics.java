@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+/*
+ * Statistics provides helpers to summarise samples collected by the framework.
+ */
+final class Statistics {
+  private Statistics() {
+  }
+
+  public static double mean(double[] values) {
+    if (values.length == 0) {
+      return Double.NaN;
+    }
+    double sum = 0.0;
+    for (double value : values) {
+      sum += value;
+    }
+    return sum / values.length;
+  }
+
+  // Return the sample standard deviation. It is 0 when there are less than two values.
+  public static double standardDeviation(double[] values) {
+    if (values.length < 2) {
+      return 0.0;
+    }
+    double mean = mean(values);
+    double sum = 0.0;
+    for (double value : values) {
+      sum += (value - mean) * (value - mean);
+    }
+    return Math.sqrt(sum / (values.length - 1));
+  }
+
+  // Return the coefficient of variation (the standard deviation relative to the mean).
+  public static double coefficientOfVariation(double[] values) {
+    double mean = mean(values);
+    if (mean == 0.0) {
+      return 0.0;
+    }
+    return standardDeviation(values) / mean;
+  }
+
+  // Return the percentile of the values using linear interpolation between the closest ranks.
+  // Arguments:
+  //   sortedValues - values sorted in ascending order.
+  //   percentile - a percentile in the range [0, 100].
+  public static double percentile(double[] sortedValues, double percentile) {
+    if (sortedValues.length == 0) {
+      return Double.NaN;
+    }
+    double rank = percentile / 100.0 * (sortedValues.length - 1);
+    int lower = (int) Math.floor(rank);
+    int upper = (int) Math.ceil(rank);
+    double fraction = rank - lower;
+    return sortedValues[lower] + fraction * (sortedValues[upper] - sortedValues[lower]);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+/*
+ * TimeBudget schedules the benchmarks run by RunBench so that the run fits into a wall-clock
+ * budget.
+ *
+ * Each benchmarking method is planned a number of samples:
+ *   samples = ceil((cv / TARGET_CV)^2), bounded to [MIN_SAMPLES, MAX_SAMPLES]
+ * where cv is the coefficient of variation of its samples in the previous runs, so that noisy
+ * methods get more samples. Methods without history get MIN_SAMPLES, or the number of samples
+ * requested with --samples if it is greater. The target running time of the samples is not
+ * changed, so the calibration and the calibration cache are the same as without a budget.
+ *
+ * The time of a method is counted in target running times: its overhead, the worst case time
+ * of its calibration and warmup, plus one per sample. Before a benchmark is calibrated, the
+ * overhead and first sample of its methods and of the methods of the benchmarks left which
+ * fit are reserved from the remaining budget, and the rest is shared between the other
+ * planned samples. The planned samples of the benchmark are scaled down to its share. The number of
+ * methods and planned samples of a benchmark not created yet are taken from the previous runs,
+ * or are the mean of the other benchmarks.
+ *
+ * The benchmark is skipped if its reserve does not fit into the remaining budget. A method
+ * stops collecting samples when its share of the budget is spent, or when its next sample,
+ * expected to take as long as the last one, would not finish by the end of the budget. So the
+ * run finishes within the budget unless the creation or verification of a benchmark or a first
+ * sample takes longer than expected.
+ *
+ * The history is stored in a file with the format of java.util.Properties:
+ *   cv.<method_id>=<coefficient of variation of the samples>
+ *   methods.<benchmark_name>=<number of methods>
+ *   samples.<benchmark_name>=<planned samples of the methods>
+ */
+class TimeBudget {
+  public static final int MIN_SAMPLES = 3;
+  public static final int MAX_SAMPLES = 30;
+  // The coefficient of variation of a method planned one sample, before the bounds are
+  // applied. A method with twice this coefficient of variation is planned four samples.
+  private static final double TARGET_CV = 0.01;
+  // The calibration runs batches of twice as many iterations until a batch takes the
+  // calibration time, so it takes less than four times the calibration time.
+  private static final double CALIBRATION_OVERHEAD = 4.0;
+  // Without the adaptive warmup, a method is warmed up with a tenth of its iterations.
+  private static final double WARMUP_OVERHEAD = 0.1;
+
+  private long budgetNs;
+  private long deadlineNs;
+  private List<String> benchNames;
+  private int nextBenchIndex = 0;
+  private File historyFile = null;
+  private Properties history = new Properties();
+  // The target running time and the overhead of a method in target running times.
+  private long targetNs;
+  private double methodOverhead;
+
+  public TimeBudget(long budgetNs) {
+    if (budgetNs <= 0) {
+      throw new IllegalArgumentException("The time budget must be positive: " + budgetNs);
+    }
+    this.budgetNs = budgetNs;
+  }
+
+  // Use and update the history stored in the file.
+  public void setHistory(String fileName) {
+    historyFile = new File(fileName);
+    if (!historyFile.exists()) {
+      return;
+    }
+    InputStream in = null;
+    try {
+      try {
+        in = new FileInputStream(historyFile);
+        history.load(in);
+      } finally {
+        if (in != null) {
+          in.close();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to load the time budget history: " + fileName, e);
+    }
+  }
+
+  // Start the budget for the benchmarks, which are scheduled in this order.
+  public void start(List<String> benchNames) {
+    this.benchNames = benchNames;
+    this.nextBenchIndex = 0;
+    this.deadlineNs = System.nanoTime() + budgetNs;
+    this.targetNs = Math.max(1, Benchmark.getTargetRunningTimeNs());
+    double warmupNs = Benchmark.isAdaptiveWarmup()
+        ? Benchmark.getMaxWarmupTimeNs() + WARMUP_OVERHEAD * targetNs
+        : WARMUP_OVERHEAD * targetNs;
+    this.methodOverhead =
+        (CALIBRATION_OVERHEAD * Benchmark.getCalibrationTimeNs() + warmupNs) / targetNs;
+  }
+
+  public boolean isSpent() {
+    return System.nanoTime() - deadlineNs >= 0;
+  }
+
+  // Skip the next benchmark because the budget is spent.
+  public void skip(String benchName) {
+    SimpleLogger.getInstance().error("The time budget is spent, skipping " + benchName + ".");
+    ++nextBenchIndex;
+  }
+
+  // Plan the samples of the methods of the benchmark, which has not been calibrated yet.
+  // Return false, and skip the benchmark, if its methods cannot be calibrated, warmed up and
+  // run one sample each in the remaining budget.
+  public boolean schedule(String benchName, Benchmark benchmark) {
+    List<Benchmark.BenchmarkMethod> methods = benchmark.getBenchMethods();
+    int[] samples = new int[methods.size()];
+    int plannedSamples = 0;
+    for (int i = 0; i < samples.length; ++i) {
+      samples[i] = getPlannedSamples(methods.get(i).getID());
+      plannedSamples += samples[i];
+    }
+    history.setProperty("methods." + benchName, Integer.toString(samples.length));
+    history.setProperty("samples." + benchName, Integer.toString(plannedSamples));
+    ++nextBenchIndex;
+
+    SimpleLogger log = SimpleLogger.getInstance();
+    double remaining = (deadlineNs - System.nanoTime()) / (double) targetNs;
+    double reserve = samples.length * (1 + methodOverhead);
+    if (remaining < reserve) {
+      log.error("The time budget left is too short, skipping " + benchName + ".");
+      return false;
+    }
+
+    // Add the reserve and the samples beyond the first ones of the benchmarks left, in target
+    // running times. The benchmarks whose reserve does not fit will be skipped.
+    int benchExtraSamples = plannedSamples - samples.length;
+    double extraSamples = benchExtraSamples;
+    for (int i = nextBenchIndex; i < benchNames.size(); ++i) {
+      double methodCount = getHistoryValue("methods.", benchNames.get(i), 1);
+      double benchReserve = methodCount * (1 + methodOverhead);
+      if (reserve + benchReserve <= remaining) {
+        reserve += benchReserve;
+        extraSamples += getHistoryValue("samples.", benchNames.get(i),
+                                        methodCount * getPlannedSamples(null)) - methodCount;
+      }
+    }
+
+    double scale = 1.0;
+    if (extraSamples > 0) {
+      scale = Math.max(0, Math.min(1, (remaining - reserve) / extraSamples));
+    }
+    log.info(benchName + ": " + (long) (scale * 100) + "% of the " + benchExtraSamples
+        + " planned samples beyond the first ones fit into the time budget.");
+    for (int i = 0; i < samples.length; ++i) {
+      int scheduled = 1 + (int) ((samples[i] - 1) * scale);
+      methods.get(i).setSchedule(scheduled,
+                                 (long) ((scheduled + methodOverhead) * targetNs), deadlineNs);
+    }
+    return true;
+  }
+
+  // Record the coefficient of variation of the samples of the result.
+  public void record(Benchmark.Result result) {
+    if (result.getSampleCount() < 2 || result.getMean() <= 0) {
+      return;
+    }
+    double cv = result.getStandardDeviation() / result.getMean();
+    history.setProperty("cv." + result.getID(), Double.toString(cv));
+  }
+
+  public void save() {
+    if (historyFile == null) {
+      return;
+    }
+    OutputStream out = null;
+    try {
+      try {
+        out = new FileOutputStream(historyFile);
+        history.store(out, "Benchmark time budget history");
+      } finally {
+        if (out != null) {
+          out.close();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to save the time budget history: " + historyFile, e);
+    }
+  }
+
+  // Return the planned samples of the method, or of a method without history if the ID is
+  // null.
+  private int getPlannedSamples(String methodID) {
+    int minSamples = Math.max(MIN_SAMPLES, Benchmark.getSamplesCount());
+    String cv = methodID == null ? null : history.getProperty("cv." + methodID);
+    if (cv == null) {
+      return minSamples;
+    }
+    double ratio = Double.parseDouble(cv) / TARGET_CV;
+    return (int) Math.max(minSamples, Math.min(MAX_SAMPLES, Math.ceil(ratio * ratio)));
+  }
+
+  // Return the value of the key for the benchmark in the previous runs, or the mean value of
+  // the known benchmarks if it has not been run, or the default value if none has been run.
+  private double getHistoryValue(String key, String benchName, double defaultValue) {
+    String value = history.getProperty(key + benchName);
+    if (value != null) {
+      return Double.parseDouble(value);
+    }
+    double sum = 0;
+    int count = 0;
+    for (String name : history.stringPropertyNames()) {
+      if (name.startsWith(key)) {
+        sum += Double.parseDouble(history.getProperty(name));
+        ++count;
+      }
+    }
+    return count == 0 ? defaultValue : sum / count;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/*
+ * TimerCalibration measures the timer used to time benchmarks, System.nanoTime, on the device:
+ *
+ *    - The latency is the median time between two successive reads of the timer.
+ *
+ *    - The granularity is the smallest non-zero difference between two reads of the timer.
+ *
+ *    - The baseline is the median time measured for a timed call of an empty benchmarking
+ *      method with one iteration, i.e. the cost of the timer reads and of the invoker.
+ *      It is subtracted from each timed call of a benchmarking method.
+ *
+ * A time shorter than SAFETY_FACTOR times the latency or the granularity is mostly
+ * the timer itself, so samples are expected to be longer than getMinDurationNs().
+ */
+final class TimerCalibration {
+  public static final int SAFETY_FACTOR = 100;
+
+  private static final int SAMPLES = 10001;
+  private static final int WARMUP_CALLS = 20000;
+
+  private final long latencyNs;
+  private final long granularityNs;
+  private final long baselineNs;
+  private final BenchmarkInvoker.Kind invokerKind;
+
+  private TimerCalibration(long latencyNs, long granularityNs, long baselineNs,
+                           BenchmarkInvoker.Kind invokerKind) {
+    this.latencyNs = latencyNs;
+    this.granularityNs = granularityNs;
+    this.baselineNs = baselineNs;
+    this.invokerKind = invokerKind;
+  }
+
+  // Measure the timer and the baseline of the invokers of the provided kind.
+  public static TimerCalibration measure(BenchmarkInvoker.Kind invokerKind) {
+    long[] latencies = new long[SAMPLES];
+    for (int i = 0; i < latencies.length; ++i) {
+      long start = System.nanoTime();
+      latencies[i] = System.nanoTime() - start;
+    }
+
+    long granularity = Long.MAX_VALUE;
+    for (int i = 0; i < SAMPLES; ++i) {
+      long start = System.nanoTime();
+      long now;
+      do {
+        now = System.nanoTime();
+      } while (now == start);
+      granularity = Math.min(granularity, now - start);
+    }
+
+    long[] baselines = new long[SAMPLES];
+    try {
+      Method method =
+          BenchmarkInvoker.EmptyBenchmark.class.getDeclaredMethod("timeEmpty", int.class);
+      BenchmarkInvoker invoker =
+          BenchmarkInvoker.create(invokerKind, new BenchmarkInvoker.EmptyBenchmark(), method);
+      for (int i = 0; i < WARMUP_CALLS; ++i) {
+        invoker.invoke(1);
+      }
+      for (int i = 0; i < baselines.length; ++i) {
+        long start = System.nanoTime();
+        invoker.invoke(1);
+        baselines[i] = System.nanoTime() - start;
+      }
+      invokerKind = invoker.getKind();
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+
+    return new TimerCalibration(median(latencies), granularity, median(baselines), invokerKind);
+  }
+
+  private static long median(long[] values) {
+    Arrays.sort(values);
+    return values[values.length / 2];
+  }
+
+  public long getLatencyNs() {
+    return latencyNs;
+  }
+
+  public long getGranularityNs() {
+    return granularityNs;
+  }
+
+  public long getBaselineNs() {
+    return baselineNs;
+  }
+
+  // Return the shortest time which can be measured precisely.
+  public long getMinDurationNs() {
+    return SAFETY_FACTOR * Math.max(latencyNs, granularityNs);
+  }
+
+  public String toString() {
+    return String.format("%-40s%d ns\n", "timer latency: ", latencyNs)
+        + String.format("%-40s%d ns\n", "timer granularity: ", granularityNs)
+        + String.format("%-40s%d ns per call (invoker: %s)\n", "empty invocation baseline: ",
+                        baselineNs, invokerKind)
+        + String.format("%-40s%d ns", "shortest safe sample: ", getMinDurationNs());
+  }
+}
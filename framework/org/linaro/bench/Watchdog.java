@@ -0,0 +1,153 @@
+/*
+ *    Copyright 2019 Linaro Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.linaro.bench;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Watchdog runs benchmarks on a worker thread and cancels the ones which do not finish in time,
+ * e.g. because a compiler regression made them pathologically slow or they hang. It is only
+ * used with a positive timeout factor: by default benchmarks are run on the calling thread.
+ *
+ * The worker arms the watchdog before each phase of a benchmark (creation, calibration and run
+ * of each method, verification) with the time the phase is expected to take. The phase times
+ * out after max(minimum timeout, timeout factor * expected time). Then the watchdog prints
+ * the stack of the worker on the standard error and interrupts it. The framework checks
+ * the interrupt between calls of benchmarking methods (cooperative cancellation), so the worker
+ * stops unless it is stuck in a call. A stuck worker is a daemon thread left running, and no
+ * other benchmark should be run next to it.
+ */
+class Watchdog {
+  public static final double DEFAULT_TIMEOUT_FACTOR = 0.0;
+  public static final long DEFAULT_MIN_TIMEOUT_MS = 30000;
+  // The exit code of RunBench when a benchmark timed out and --exit_on_timeout is used or
+  // the benchmark did not stop when cancelled.
+  public static final int TIMEOUT_EXIT_CODE = 3;
+
+  // The time given to a cancelled worker to stop.
+  private static final long CANCEL_GRACE_MS = 2000;
+
+  private double timeoutFactor;
+  private long minTimeoutNs;
+  // The current worker, the phase it is running and the time (System.nanoTime) at which
+  // the phase times out.
+  private Thread worker;
+  private String label;
+  private long deadlineNs;
+  // Whether a cancelled worker did not stop.
+  private boolean stuckWorker = false;
+
+  public Watchdog(double timeoutFactor, long minTimeoutMs) {
+    this.timeoutFactor = timeoutFactor;
+    this.minTimeoutNs = TimeUnit.NANOSECONDS.convert(minTimeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  // Called by the worker before a phase. Calls from other threads, e.g. workers left running
+  // after they timed out, are ignored.
+  // Arguments:
+  //   label - the benchmark or benchmarking method the phase is run for.
+  //   expectedNs - the time the phase is expected to take.
+  public synchronized void arm(String label, long expectedNs) {
+    if (Thread.currentThread() != worker) {
+      return;
+    }
+    setPhase(label, expectedNs);
+  }
+
+  private void setPhase(String label, long expectedNs) {
+    this.label = label;
+    this.deadlineNs =
+        System.nanoTime() + Math.max(minTimeoutNs, (long) (timeoutFactor * expectedNs));
+  }
+
+  // Run the task on a worker thread and wait for it to finish or to time out.
+  // Return the label of the phase which timed out, or null if the task finished. Failures
+  // of the task are rethrown.
+  // Arguments:
+  //   label - the label of the task until it arms the watchdog.
+  public String run(String label, final Runnable task) {
+    final Throwable[] failure = new Throwable[1];
+    final Thread worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } catch (Throwable e) {
+          failure[0] = e;
+        }
+      }
+    }, "benchmark");
+    worker.setDaemon(true);
+    synchronized (this) {
+      this.worker = worker;
+      setPhase(label, 0);
+    }
+    worker.start();
+    try {
+      // The worker moves the deadline forward when it arms the next phase, so the join is
+      // repeated until the worker finishes or the deadline of its current phase is reached.
+      long remainingNs;
+      while (worker.isAlive() && (remainingNs = getRemainingNs()) > 0) {
+        TimeUnit.NANOSECONDS.timedJoin(worker, remainingNs);
+      }
+      if (worker.isAlive()) {
+        String timedOut = getLabel();
+        cancel(worker, timedOut);
+        return timedOut;
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    if (failure[0] instanceof RuntimeException) {
+      throw (RuntimeException) failure[0];
+    } else if (failure[0] instanceof Error) {
+      throw (Error) failure[0];
+    } else if (failure[0] != null) {
+      throw new RuntimeException(failure[0]);
+    }
+    return null;
+  }
+
+  // Return whether a worker which timed out did not stop when cancelled.
+  public boolean hasStuckWorker() {
+    return stuckWorker;
+  }
+
+  private synchronized long getRemainingNs() {
+    return deadlineNs - System.nanoTime();
+  }
+
+  private synchronized String getLabel() {
+    return label;
+  }
+
+  private void cancel(Thread worker, String timedOut) throws InterruptedException {
+    SimpleLogger log = SimpleLogger.getInstance();
+    StringBuilder stack = new StringBuilder();
+    for (StackTraceElement element : worker.getStackTrace()) {
+      stack.append("\n\tat ").append(element);
+    }
+    log.error(timedOut + " timed out. Stack of the benchmark thread:" + stack);
+    worker.interrupt();
+    worker.join(CANCEL_GRACE_MS);
+    if (worker.isAlive()) {
+      log.error(timedOut + " did not stop when cancelled and keeps running.");
+      stuckWorker = true;
+    }
+  }
+}
@@ -41,4 +41,4 @@ if __name__ == "__main__":
     args = BuildOptions()
     with open(args.result_file, 'r') as result_file:
         data = json.load(result_file, object_pairs_hook=OrderedDict)
-    Report(data)
+    Report(utils.StripMetadata(data))
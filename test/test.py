@@ -16,6 +16,7 @@
 #
 
 import argparse
+import json
 import multiprocessing
 import os
 import subprocess
@@ -46,22 +47,88 @@ def BuildOptions():
     return parser.parse_args()
 
 
-def TestCommand(command, _cwd=None):
+# Return 0 if the command exits with `expected_rc`, prints all the `expected_output` strings
+# and none of the `unexpected_output` strings.
+def TestCommand(command, _cwd=None, expected_output=[], _input=None, expected_rc=0,
+                unexpected_output=[]):
     escape_wildcards = lambda x: x if not '*' in x else '"' + x + '"'
     printable_command = ' '.join(list(map(escape_wildcards, command)))
     if _cwd is not None:
         printable_command = "cd " + _cwd + " && " + printable_command
     print("Testing: " + printable_command)
-    p = subprocess.Popen(command, stdout=subprocess.PIPE, stderr=subprocess.STDOUT, cwd=_cwd)
-    outerr, empty_err = p.communicate()
+    p = subprocess.Popen(command, stdout=subprocess.PIPE, stderr=subprocess.STDOUT, cwd=_cwd,
+                         stdin=subprocess.PIPE if _input is not None else None)
+    outerr, empty_err = p.communicate(_input.encode() if _input is not None else None)
     outerr = outerr.decode()
     rc = p.poll()
+    if rc == expected_rc:
+        rc = 0
+    elif rc == 0:
+        rc = 1
+    missing = [e for e in expected_output if e not in outerr]
+    if rc == 0 and missing:
+        rc = 1
+        print("Missing output: " + ', '.join(missing))
+    unexpected = [e for e in unexpected_output if e in outerr]
+    if rc == 0 and unexpected:
+        rc = 1
+        print("Unexpected output: " + ', '.join(unexpected))
     if rc != 0:
         print("FAILED: " + printable_command)
         print(outerr)
     return rc
 
 
+# Return the command running `RunBench` on host with the provided arguments.
+def RunBenchCommand(args):
+    return ["java", "-cp", utils.dir_build_java_classes, "org.linaro.bench.RunBench"] + args
+
+
+# Test the options of `RunBench` itself, run directly on host.
+def TestRunBenchOptions():
+    rc = 0
+    # Parameters are expanded into one method per value, and can be overridden.
+    rc |= TestCommand(RunBenchCommand(["benchmarks/algorithm/Sort.MergeSort"]),
+                      expected_output=["Sort.MergeSort[size=16]:",
+                                       "Sort.MergeSort[size=2048]:"])
+    rc |= TestCommand(RunBenchCommand(["--param", "size=64,256",
+                                       "benchmarks/algorithm/Sort.SystemSort"]),
+                      expected_output=["Sort.SystemSort[size=64]:",
+                                       "Sort.SystemSort[size=256]:"])
+    rc |= TestCommand(RunBenchCommand(["--param", "length=4",
+                                       "benchmarks/micro/StringOps"]),
+                      expected_output=["StringOps.StringEquals[length=4]:"])
+    # Result formats, samples and running modes, on a short benchmark.
+    bench = "benchmarks/algorithm/NSieve"
+    rc |= TestCommand(RunBenchCommand(["--format", "jsonl", bench]),
+                      expected_output=['"id":"' + bench + '.NSieveAccess"',
+                                       '"ns_per_iteration":'])
+    rc |= TestCommand(RunBenchCommand(["--format", "csv", bench]),
+                      expected_output=["id,iterations,samples,", bench + ".NSieveAccess,"])
+    rc |= TestCommand(RunBenchCommand(["--samples", "3", bench]),
+                      expected_output=["3 samples)"])
+    rc |= TestCommand(RunBenchCommand(["--fork", "2", bench]),
+                      expected_output=["2 forks)"])
+    # NSieve shares its sieve between instances, so the threads run a benchmark without
+    # shared state.
+    rc |= TestCommand(RunBenchCommand(["--threads", "2", "benchmarks/algorithm/BitopsNSieve"]),
+                      expected_output=["BitopsNSieve.BitopsNSieve[threads=2]:"])
+    rc |= TestCommand(RunBenchCommand(["--server"]),
+                      _input=bench + "\n" + bench + "\n--quit\n",
+                      expected_output=["# done: 0 failures"])
+    rc |= TestCommand(RunBenchCommand(["--time_budget", "3", bench, "benchmarks/micro/Base64"]),
+                      expected_output=[bench + ".NSieveAccess:", "Base64.Encode:"])
+    # A timeout far shorter than the benchmark is reported as a failure. It can expire in any
+    # phase of the benchmark, which is then cancelled.
+    rc |= TestCommand(RunBenchCommand(["--timeout_factor", "0.001", "--min_timeout", "1",
+                                       bench]),
+                      expected_output=[bench, "TIMEOUT"], expected_rc=1)
+    rc |= TestCommand(RunBenchCommand(["--timeout_factor", "0.001", "--min_timeout", "1",
+                                       "--exit_on_timeout", bench]),
+                      expected_output=["TIMEOUT"], expected_rc=3)
+    return rc
+
+
 # A `target` set to `None` indicates that the tests should be run on host.
 def TestBenchmarksCommon(target):
     rc = 0
@@ -96,6 +163,9 @@ def TestBenchmarksCommon(target):
                        "--output-pkl=no_path_prefix.pkl"],
                       _cwd=non_root_path)
     rc |= TestCommand(["rm", "-rf", non_root_path])
+    if target is None:
+        # `RunBench` is run directly on host only.
+        rc |= TestRunBenchOptions()
     return rc
 
 
@@ -133,6 +203,72 @@ def TestTopLevelWrapperScripts():
     rc |= TestCommand(["./tools/benchmarks/run.py", "--filter", "algo", "--output-json=/tmp/res1"], _cwd=utils.dir_root)
     rc |= TestCommand(["./tools/benchmarks/run.py", "--filter", "algo", "--filter", "math", "--output-json=/tmp/res2"], _cwd=utils.dir_root)
     rc |= TestCommand(["./compare.py", "/tmp/res1", "/tmp/res2"], _cwd=utils.dir_root)
+    rc |= TestCommand(["./compare.py", "--bootstrap", "/tmp/res1", "/tmp/res2"],
+                      _cwd=utils.dir_root, expected_output=["verdict", "geomean"])
+    rc |= TestCompareBootstrap()
+    rc |= TestJvmMatrixAndAB()
+    return rc
+
+
+# Test the bootstrap verdicts and `--fail-on-regression` of compare.py on results with known
+# changes. The `__metadata__` of the results must not be compared.
+def TestCompareBootstrap():
+    rc = 0
+    metadata = {"adaptive": {"benchmarks/Foo.Bar": {"stop": "max-iterations"}}}
+    base = [100.0, 101.0, 99.0, 100.5, 99.5, 100.0, 100.2, 99.8]
+    results = {
+        "/tmp/res_base.json": base,
+        "/tmp/res_same.json": [x + 0.1 for x in base],
+        "/tmp/res_slow.json": [x * 2 for x in base],
+    }
+    for path, samples in results.items():
+        with open(path, "w") as f:
+            json.dump({"benchmarks/Foo.Bar": samples, utils.metadata_label: metadata}, f)
+    rc |= TestCommand(["./compare.py", "--bootstrap", "/tmp/res_base.json", "/tmp/res_same.json"],
+                      _cwd=utils.dir_root, expected_output=["no change"],
+                      unexpected_output=[utils.metadata_label])
+    rc |= TestCommand(["./compare.py", "--fail-on-regression", "/tmp/res_base.json",
+                       "/tmp/res_same.json"],
+                      _cwd=utils.dir_root, unexpected_output=[utils.metadata_label])
+    rc |= TestCommand(["./compare.py", "--fail-on-regression", "/tmp/res_base.json",
+                       "/tmp/res_slow.json"],
+                      _cwd=utils.dir_root, expected_output=["regression", "benchmarks/Foo.Bar"],
+                      expected_rc=1, unexpected_output=[utils.metadata_label])
+    # The regressions of nested results are listed with their full key.
+    for path, samples in [("/tmp/res_nested_base.json", base),
+                          ("/tmp/res_nested_slow.json", [x * 2 for x in base])]:
+        with open(path, "w") as f:
+            json.dump({"benchmarks/Foo.Bar": {"Compiled": samples, "Interpreted": base}}, f)
+    rc |= TestCommand(["./compare.py", "--fail-on-regression", "/tmp/res_nested_base.json",
+                       "/tmp/res_nested_slow.json"],
+                      _cwd=utils.dir_root,
+                      expected_output=["regressions: benchmarks/Foo.Bar/Compiled"], expected_rc=1)
+    return rc
+
+
+# Test `--jvm-matrix` and `--ab` runs and their comparison. Both builds of the A/B run are the
+# same, so it must not report a regression beyond the noise.
+def TestJvmMatrixAndAB():
+    rc = 0
+    bench_filter = "*BitopsNSieve*"
+    with open("/tmp/jvm_matrix", "w") as f:
+        f.write("serial: -XX:+UseSerialGC\n")
+        f.write("parallel: -XX:+UseParallelGC\n")
+    rc |= TestCommand(["./tools/benchmarks/run.py", "--filter", bench_filter, "--iterations", "5",
+                       "--jvm-matrix", "/tmp/jvm_matrix", "--output-json=/tmp/res_matrix"],
+                      _cwd=utils.dir_root)
+    rc |= TestCommand(["./compare.py", "--bootstrap", "--config-1", "serial",
+                       "--config-2", "parallel", "/tmp/res_matrix"],
+                      _cwd=utils.dir_root, expected_output=["BitopsNSieve", "verdict"],
+                      unexpected_output=[utils.metadata_label])
+    bench_jar = os.path.join(utils.dir_build, "bench.jar")
+    rc |= TestCommand(["./tools/benchmarks/run.py", "--filter", bench_filter, "--iterations", "5",
+                       "--ab", bench_jar, bench_jar, "--output-json=/tmp/res_ab"],
+                      _cwd=utils.dir_root)
+    rc |= TestCommand(["./compare.py", "--fail-on-regression", "--regression-threshold", "50",
+                       "/tmp/res_ab"],
+                      _cwd=utils.dir_root, expected_output=["BitopsNSieve", "verdict"],
+                      unexpected_output=[utils.metadata_label])
     return rc
 
 
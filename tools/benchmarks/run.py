@@ -17,7 +17,13 @@
 
 import argparse
 import csv
+import itertools
+import json
+import multiprocessing
 import os
+import random
+import re
+import shlex
 import subprocess
 import sys
 import time
@@ -52,6 +58,55 @@ def BuildOptions():
     parser.add_argument('-n', '--norun', action='store_true',
                         help='''Build and configure everything, but do not run
                         the benchmarks.''')
+    parser.add_argument('--discard-jit-samples',
+                        action='store_true', default=False,
+                        help='''Discard the results of benchmark runs during which
+                        code was compiled or classes were loaded while measuring.
+                        Only valid with auto-calibration.''')
+    parser.add_argument('--jit-reruns', type=int, default=0,
+                        help='''Run a measurement again, at most this number of
+                        times per benchmark method, when code was compiled or
+                        classes were loaded during it. Only valid with
+                        auto-calibration.''')
+    parser.add_argument('--time-budget', type=float, default=None,
+                        help='''Fit the run into this wall-clock time in seconds.
+                        The time is split between the runs of the benchmarks,
+                        which split it between their methods according to the
+                        variance of their previous results. Runs left when the
+                        time is spent are skipped. Only valid with
+                        auto-calibration.''')
+    parser.add_argument('--jvm-matrix', default=None, metavar='FILE',
+                        help='''Run every benchmark under each JVM configuration
+                        listed in FILE, one `<name>: <JVM arguments>` per line,
+                        e.g. `parallel: -XX:+UseParallelGC -Xmx1g`. The runs of
+                        the configurations are interleaved and the results are
+                        keyed by configuration name. Only valid on host.''')
+    parser.add_argument('--adaptive-precision', type=float, default=None, metavar='PERCENT',
+                        help='''Run each benchmark at least `--iterations` times and
+                        then again until the 95%% confidence interval of the median
+                        of each of its methods is narrower than PERCENT of the
+                        median, or `--max-iterations` runs are done. The stopping
+                        reason and the precision reached are recorded under
+                        `__metadata__` in the JSON output.''')
+    parser.add_argument('--jobs', '-j', type=int, default=1,
+                        help='''Run the benchmarks in this number of worker
+                        processes, each running its share of the benchmarks on
+                        its own set of CPUs with `taskset`. The CPUs are split
+                        by physical core. A warning is printed when workers share
+                        physical cores or NUMA nodes. Only valid on host.''')
+    parser.add_argument('--ab', nargs=2, default=None, metavar=('BUILD_A', 'BUILD_B'),
+                        help='''Compare two builds: `bench.jar` files on host or
+                        `bench.apk` files on target. Each iteration runs each
+                        benchmark from both builds, in a random order. The results
+                        are keyed `A` and `B`, the i-th samples of a method in A and
+                        B making a pair, and `compare.py` compares them with paired
+                        tests.''')
+    parser.add_argument('--ab-seed', type=int, default=None,
+                        help='''The seed of the order of the A/B runs. It is random
+                        by default and recorded under `__metadata__`.''')
+    parser.add_argument('--max-iterations', type=int, default=30,
+                        help='''The maximum number of runs of a benchmark with
+                        `--adaptive-precision`.''')
 
 
     args = parser.parse_args()
@@ -79,11 +134,121 @@ def BuildBenchmarks(build_for_target):
         command += ['-t']
     utils.Command(command)
 
+# Extra arguments passed to `bench_runner_main`.
+bench_runner_args = []
+
+# The CPUs (a `taskset` list) the benchmarks are run on by a worker of `--jobs`, or `None`
+# to run them on any CPU.
+host_cpus = None
+
+# The class path of the runs on host, or `None` to run the classes of the build directory.
+host_classpath = None
+
+# The builds compared by `--ab`, as an ordered dictionary of the labels `A` and `B` and
+# the paths of the builds on host or on target, or `None` if no builds are compared.
+ab_builds = None
+# The builds and the seed of the A/B comparison, recorded under `__metadata__`/`ab`.
+ab_metadata = OrderedDict()
+
+# The named JVM argument lists of `--jvm-matrix`, or `None` to run the default JVM only.
+jvm_matrix = None
+# The JVM arguments of the next run.
+jvm_args = []
+
+# The target width in % of the median of the confidence interval of the median of each
+# benchmark method, or `None` to run a fixed number of iterations, and the maximum number
+# of runs of a benchmark in the adaptive mode.
+adaptive_precision = None
+adaptive_max_iterations = 0
+# How the sampling of each benchmark method stopped in the adaptive mode. It is recorded
+# under `__metadata__`/`adaptive`.
+adaptive_metadata = OrderedDict()
+
+# Whether results with JIT activity during their samples are discarded.
+discard_jit_samples = False
+
+# The end (as returned by `time.time()`) of the time budget of the run, or `None` if there
+# is no time budget, and the number of runs of `bench_runner_main` left in it.
+time_budget_end = None
+time_budget_runs_left = 0
+# The longest time a run took on top of its time budget, e.g. to start the VM.
+time_budget_overhead = 0.0
+# The file keeping the variance of the benchmark methods between runs.
+time_budget_history = None
+# The share of the time budget in seconds of the next run.
+time_budget_next_run = None
+
+def TimeBudgetArgs():
+    # Return the options of `bench_runner_main` giving the next run its share of the
+    # remaining time budget.
+    if time_budget_next_run is None:
+        return []
+    args = ['--time_budget', '%.3f' % time_budget_next_run]
+    if time_budget_history:
+        args += ['--time_budget_history', time_budget_history]
+    return args
+
+def ReadJvmMatrix(filename):
+    # Return the JVM configurations of the file as an ordered dictionary of the names and
+    # the argument lists. Empty lines and lines starting with `#` are ignored.
+    matrix = OrderedDict()
+    with open(filename, 'r') as matrix_file:
+        for line_number, line in enumerate(matrix_file, 1):
+            line = line.strip()
+            if not line or line.startswith('#'):
+                continue
+            match = re.match(r'([\w.+-]+)\s*:(.*)$', line)
+            if not match:
+                utils.Error('%s:%d: expected `<name>: <JVM arguments>`.' % (filename, line_number))
+            name = match.group(1)
+            if name in matrix:
+                utils.Error('%s:%d: duplicate configuration `%s`.' % (filename, line_number, name))
+            matrix[name] = shlex.split(match.group(2))
+    if not matrix:
+        utils.Error('No JVM configuration in %s.' % filename)
+    return matrix
+
+def KeepSampling(classname, runs):
+    # Return whether the benchmark needs more runs in the adaptive mode. When it does not,
+    # record how the sampling of its methods stopped.
+    if adaptive_precision is None:
+        return False
+    # The results of the methods of the benchmark, for all JVM configurations.
+    configs = [(name + '/', result.get(name, {})) for name in jvm_matrix] if jvm_matrix \
+              else [('', result)]
+    results = [(prefix + bench, values)
+               for prefix, config_result in configs
+               for bench, values in config_result.items()
+               if bench == classname or bench.startswith(classname + '.')]
+    widths = OrderedDict((bench, utils_stats.CalcMedianConfidenceIntervalWidth(values))
+                         for bench, values in results)
+    if not widths:
+        reason = 'no results'
+    elif all(width <= adaptive_precision for width in widths.values()):
+        reason = 'precision reached'
+    elif runs >= adaptive_max_iterations:
+        reason = 'maximum iterations'
+    else:
+        return True
+    for bench, values in results:
+        width = widths[bench]
+        adaptive_metadata[bench] = OrderedDict([
+            ('stop_reason', reason),
+            ('samples', len(values)),
+            ('median_ci_width_percent', width if width != float('inf') else None)])
+        utils_print.VerbosePrint('%s: %s after %d samples, median CI width %.2f%%' %
+                                 (bench, reason, len(values), width))
+    if not widths:
+        utils.Warning('No results of %s, stopping its adaptive sampling.' % classname)
+    return False
+
 def RunBenchADB(mode, compiler_mode, android_root, auto_calibrate, apk, classname, target, cpuset):
     apk_arguments = ''
     if auto_calibrate:
         # Run the benchmark's time* method(s) via bench_runner_main
-        apk_arguments += " %s %s" % (bench_runner_main, classname)
+        apk_arguments += " %s %s" % (bench_runner_main,
+                                     ' '.join(bench_runner_args + TimeBudgetArgs() +
+                                              [classname]))
     else:
         # Run the benchmark as a main class directly
         apk_arguments += " %s" % (classname)
@@ -114,9 +279,16 @@ def RunBenchHost(ignored_mode,
     command_string = None
 
     if auto_calibrate:
-        command = ['java', bench_runner_main, classname]
+        command = ['java'] + jvm_args + [bench_runner_main] + bench_runner_args + \
+                  TimeBudgetArgs() + [classname]
     else:
-        command = ['java', classname]
+        command = ['java'] + jvm_args + [classname]
+
+    if host_classpath:
+        command = command[:1] + ['-cp', host_classpath] + command[1:]
+
+    if host_cpus:
+        command = ['taskset', '-c', host_cpus] + command
 
     if cpuset:
       command_string = 'echo $BASHPID > /dev/cpuset/' + cpuset + '/tasks && '
@@ -130,6 +302,31 @@ def RunBenchHost(ignored_mode,
 # TODO: Avoid using global variables.
 result = dict()
 
+def ParseRunOutput(outerr):
+    # Return the names and scores of the benchmark methods in the output of a run.
+    scores = []
+    for line in outerr.rstrip().splitlines():
+        line = line.strip()
+        if line.startswith('{'):
+            # A JSON record printed by `bench_runner_main` with `--format jsonl`.
+            record = json.loads(line)
+            if record.get('status') == 'TIMEOUT':
+                utils.Warning('%s timed out, no result recorded.' % record['id'])
+                continue
+            if discard_jit_samples and record['jit_samples']:
+                utils_print.VerbosePrint('Discarding result with JIT activity: ' + line)
+                continue
+            name = record['id']
+            score = record['ns_per_iteration']
+        elif line.startswith('benchmarks/'):
+            # A result printed by the `main()` function of a benchmark.
+            name = line.split(":")[0].rstrip()
+            score = float(line.split(":")[1].strip().split(" ")[0].strip())
+        else:
+            continue
+        scores.append((name, score))
+    return scores
+
 def RunBench(apk, classname,
              run_helper,
              auto_calibrate,
@@ -139,42 +336,147 @@ def RunBench(apk, classname,
              android_root = utils.default_android_root,
              target = None,
              cpuset = None):
+    global time_budget_runs_left, time_budget_overhead, time_budget_next_run, jvm_args
     rc = 0
-    for iteration in range(iterations):
-        try:
-            local_rc, outerr = run_helper(mode,
-                                          compiler_mode,
-                                          android_root,
-                                          auto_calibrate,
-                                          apk,
-                                          classname,
-                                          target,
-                                          cpuset)
-            rc += local_rc
-            outerr = outerr.rstrip('\r\n')
-            utils_print.VerbosePrint(outerr)
-        except Exception as e:
-            utils.Warning(str(e) + "\n  \-> FAILED, continuing anyway\n", e)
-            rc += 1
-            continue
-
-        try:
-            for line in outerr.rstrip().splitlines():
-                if not line.startswith('benchmarks/'):
-                    continue
-                name = line.split(":")[0].rstrip()
-                score = float(line.split(":")[1].strip().split(" ")[0].strip())
-                if name not in result:
-                    result[name] = list()
-                result[name].append(score)
-        except Exception as e:
-            utils.Warning(str(e) + "\n  \-> Error parsing output from %s", e)
-            rc += 1
+    configs = list(jvm_matrix.items()) if jvm_matrix else [(None, [])]
+    for iteration in itertools.count():
+        if iteration >= iterations and not KeepSampling(classname, iteration):
             break
+        # Interleave the configurations, starting each iteration with another one so that
+        # none of them is always run first.
+        shift = iteration % len(configs)
+        for config_name, config_args in configs[shift:] + configs[:shift]:
+            jvm_args = config_args
+            if config_name is None:
+                config_result = result
+            else:
+                config_result = result.setdefault(config_name, OrderedDict())
+            if time_budget_end is not None:
+                time_budget_next_run = (time_budget_end - time.time() - time_budget_overhead) / \
+                                       max(1, time_budget_runs_left)
+                time_budget_runs_left -= 1
+                if time_budget_next_run < 0.001:
+                    utils.Warning('The time budget is spent, skipping %s.' % classname)
+                    continue
+                run_start = time.time()
+            try:
+                local_rc, outerr = run_helper(mode,
+                                              compiler_mode,
+                                              android_root,
+                                              auto_calibrate,
+                                              apk,
+                                              classname,
+                                              target,
+                                              cpuset)
+                rc += local_rc
+                if time_budget_end is not None:
+                    time_budget_overhead = max(time_budget_overhead,
+                                               time.time() - run_start - time_budget_next_run)
+                outerr = outerr.rstrip('\r\n')
+                utils_print.VerbosePrint(outerr)
+            except Exception as e:
+                utils.Warning(str(e) + "\n  \-> FAILED, continuing anyway\n", e)
+                rc += 1
+                continue
+
+            try:
+                for name, score in ParseRunOutput(outerr):
+                    if name not in config_result:
+                        config_result[name] = list()
+                    config_result[name].append(score)
+            except Exception as e:
+                utils.Warning(str(e) + "\n  \-> Error parsing output from %s", e)
+                rc += 1
+                break
+
+    return rc
+
+
 
+def RunBenchAB(classname,
+               run_helper,
+               auto_calibrate,
+               iterations,
+               mode,
+               compiler_mode,
+               android_root,
+               target,
+               cpuset,
+               rand):
+    # Run the benchmark from the builds A and B in turn, in a random order at each iteration,
+    # so that both builds see the same drift of the machine.
+    global host_classpath
+    rc = 0
+    for iteration in range(iterations):
+        labels = list(ab_builds)
+        rand.shuffle(labels)
+        scores = OrderedDict()
+        for label in labels:
+            apk = ab_builds[label] if target else None
+            host_classpath = None if target else ab_builds[label]
+            try:
+                local_rc, outerr = run_helper(mode,
+                                              compiler_mode,
+                                              android_root,
+                                              auto_calibrate,
+                                              apk,
+                                              classname,
+                                              target,
+                                              cpuset)
+                rc += local_rc
+                utils_print.VerbosePrint(outerr.rstrip('\r\n'))
+                scores[label] = OrderedDict(ParseRunOutput(outerr))
+            except Exception as e:
+                utils.Warning(str(e) + "\n  \-> FAILED, continuing anyway\n", e)
+                rc += 1
+        # Keep only the methods with a score in both builds, so that the i-th samples of
+        # a method in A and B are a pair.
+        if len(scores) != len(ab_builds):
+            utils.Warning('Discarding iteration %d of %s, which failed in a build.' %
+                          (iteration, classname))
+            continue
+        for name, score_a in scores['A'].items():
+            if name not in scores['B']:
+                utils.Warning('Discarding %s, which has no result in B.' % name)
+                continue
+            result.setdefault('A', OrderedDict()).setdefault(name, []).append(score_a)
+            result.setdefault('B', OrderedDict()).setdefault(name, []).append(
+                scores['B'][name])
     return rc
 
+def RunBenchsAB(bench_names,
+                target,
+                auto_calibrate,
+                iterations,
+                mode,
+                compiler_mode,
+                android_root,
+                cpuset,
+                seed):
+    rc = 0
+    rand = random.Random(seed)
+    utils_print.VerbosePrint('\n# Running benchmarks from A and B: ' + ' '.join(bench_names))
+    run_helper = RunBenchADB if target else RunBenchHost
+    for bench in bench_names:
+        rc += RunBenchAB(bench, run_helper, auto_calibrate, iterations, mode, compiler_mode,
+                         android_root, target, cpuset, rand)
+    return rc
 
+def PushABBuilds(builds, target_copy_path, target):
+    # Push each build with the resources in its own directory, whose path is the `workdir`
+    # of ART_COMMAND, and return the paths of the builds on target.
+    remote_builds = OrderedDict()
+    resources_tar = os.path.join(utils.dir_build, 'resources.tar')
+    for label, apk in builds.items():
+        remote_dir = utils.TargetPathJoin(target_copy_path, 'ab_' + label)
+        utils_adb.shell('rm -rf ' + remote_dir + ' && mkdir -p ' + remote_dir, target)
+        utils_adb.push(apk, remote_dir, target)
+        if os.path.isfile(resources_tar):
+            utils_adb.push(resources_tar, remote_dir, target)
+            utils_adb.shell('tar xf ' + utils.TargetPathJoin(remote_dir, 'resources.tar') +
+                            ' -C ' + remote_dir, target)
+        remote_builds[label] = utils.TargetPathJoin(remote_dir, os.path.basename(apk))
+    return remote_builds
 
 def RunBenchs(apk, bench_names,
               target,
@@ -201,9 +503,113 @@ def RunBenchs(apk, bench_names,
     return rc
 
 
+def GetCpuTopology():
+    # Return the (NUMA node, package, core) of each CPU the process may run on.
+    topology = OrderedDict()
+    for cpu in sorted(os.sched_getaffinity(0)):
+        path = '/sys/devices/system/cpu/cpu%d' % cpu
+        try:
+            nodes = [int(d[len('node'):]) for d in os.listdir(path) if re.match(r'node\d+$', d)]
+            with open(os.path.join(path, 'topology', 'physical_package_id')) as f:
+                package = int(f.read())
+            with open(os.path.join(path, 'topology', 'core_id')) as f:
+                core = int(f.read())
+        except (OSError, ValueError):
+            # Without topology, consider each CPU as a core of its own.
+            nodes, package, core = [], 0, cpu
+        topology[cpu] = (nodes[0] if nodes else 0, package, core)
+    return topology
+
+def ShardCpus(jobs, topology):
+    # Split the CPUs into `jobs` sets. The sets are made of whole physical cores, the cores
+    # of a set being close to each other, when there are enough cores. Otherwise, the sets
+    # share cores or CPUs.
+    cores = OrderedDict()
+    for cpu, core in sorted(topology.items(), key=lambda item: (item[1], item[0])):
+        cores.setdefault(core, []).append(cpu)
+    units = list(cores.values())
+    if len(units) < jobs:
+        units = [[cpu] for cpu in sum(units, [])]
+    if len(units) < jobs:
+        return [units[i % len(units)] for i in range(jobs)]
+    return [sum(units[i * len(units) // jobs:(i + 1) * len(units) // jobs], [])
+            for i in range(jobs)]
+
+def WarnSharedResources(shards, topology):
+    # Warn about the workers of `--jobs` whose CPUs share physical cores or NUMA nodes, as
+    # the benchmarks they run disturb each other. Sharing the only NUMA node of the host
+    # cannot be avoided, so it is not reported.
+    numa = len(set(core[0] for core in topology.values())) > 1
+    shared_cores = []
+    shared_nodes = []
+    for i in range(len(shards)):
+        for j in range(i + 1, len(shards)):
+            cores_i = set(topology[cpu] for cpu in shards[i])
+            cores_j = set(topology[cpu] for cpu in shards[j])
+            if cores_i & cores_j:
+                shared_cores.append('%d-%d' % (i, j))
+            elif numa and set(core[0] for core in cores_i) & set(core[0] for core in cores_j):
+                shared_nodes.append('%d-%d' % (i, j))
+    if shared_cores:
+        utils.Warning('These workers share physical cores, so the results of their '
+                      'benchmarks are not independent: ' + ' '.join(shared_cores))
+    if shared_nodes:
+        utils.Warning('These workers share NUMA nodes, so their benchmarks compete for '
+                      'caches and memory bandwidth: ' + ' '.join(shared_nodes))
+
+def RunShard(queue, index, cpus, bench_names, *run_args):
+    # Run the benchmarks on the CPUs in a worker process and send the results to the parent.
+    global host_cpus
+    host_cpus = ','.join(map(str, cpus))
+    result.clear()
+    adaptive_metadata.clear()
+    rc = 1
+    try:
+        rc = RunBenchs(None, bench_names, None, *run_args)
+    finally:
+        # Always answer, even when `utils.Error` exits, so that the parent does not wait.
+        queue.put((index, rc, result, adaptive_metadata))
+
+def RunBenchsInParallel(bench_names, jobs, *run_args):
+    # Run the benchmarks in `jobs` worker processes pinned to disjoint CPU sets and merge
+    # their results into `result`.
+    topology = GetCpuTopology()
+    shards = ShardCpus(jobs, topology)
+    WarnSharedResources(shards, topology)
+    context = multiprocessing.get_context('fork')
+    queue = context.Queue()
+    workers = []
+    for index, cpus in enumerate(shards):
+        shard_bench_names = bench_names[index::jobs]
+        if not shard_bench_names:
+            continue
+        utils_print.VerbosePrint('# Worker %d on CPUs %s: %s' %
+                                 (index, ','.join(map(str, cpus)), ' '.join(shard_bench_names)))
+        worker = context.Process(target=RunShard,
+                                 args=(queue, index, cpus, shard_bench_names) + run_args)
+        worker.start()
+        workers.append(worker)
+    rc = 0
+    for _ in workers:
+        index, shard_rc, shard_result, shard_metadata = queue.get()
+        rc += shard_rc
+        # The workers run different benchmarks, so their results do not overlap.
+        for key, value in shard_result.items():
+            if utils.IsDictionary(value):
+                result.setdefault(key, OrderedDict()).update(value)
+            else:
+                result[key] = value
+        adaptive_metadata.update(shard_metadata)
+    for worker in workers:
+        worker.join()
+        if worker.exitcode:
+            rc += 1
+    return rc
+
 def ListAllBenchmarks():
+    classpath = ['-cp', host_classpath] if host_classpath else []
     rc, out = utils.Command(
-        ['java', 'org.linaro.bench.RunBench', '--list_benchmarks'],
+        ['java'] + classpath + ['org.linaro.bench.RunBench', '--list_benchmarks'],
         cwd=utils.dir_build_java_classes)
     out = out.rstrip()
     benchs = out.splitlines()
@@ -211,6 +617,10 @@ def ListAllBenchmarks():
 
 
 def GetBenchmarkResults(args):
+    global discard_jit_samples, time_budget_end, time_budget_runs_left, time_budget_history
+    global jvm_matrix, adaptive_precision, adaptive_max_iterations
+    global ab_builds, host_classpath
+
     if getattr(args, 'filter', []) == []:
         setattr(args, 'filter', None)
 
@@ -223,13 +633,87 @@ def GetBenchmarkResults(args):
     if getattr(args, 'norun', None) is None:
         setattr(args, 'norun', False)
 
+    if not args.no_auto_calibrate:
+        bench_runner_args.extend(['--format', 'jsonl'])
+
+    if getattr(args, 'discard_jit_samples', False):
+        if args.no_auto_calibrate:
+            utils.Error('`--discard-jit-samples` requires auto-calibration.')
+        discard_jit_samples = True
+
+    if getattr(args, 'jit_reruns', 0):
+        if args.no_auto_calibrate:
+            utils.Error('`--jit-reruns` requires auto-calibration.')
+        bench_runner_args.extend(['--jit_reruns', str(args.jit_reruns)])
+
+    if getattr(args, 'time_budget', None) is not None:
+        if args.no_auto_calibrate:
+            utils.Error('`--time-budget` requires auto-calibration.')
+        if args.time_budget <= 0:
+            utils.Error('`--time-budget` must be positive.')
+        if args.target:
+            time_budget_history = utils.TargetPathJoin(args.target_copy_path,
+                                                       'time_budget_history')
+        else:
+            time_budget_history = os.path.join(utils.dir_build, 'time_budget_history')
+
+    if getattr(args, 'adaptive_precision', None) is not None:
+        if args.adaptive_precision <= 0:
+            utils.Error('`--adaptive-precision` must be positive.')
+        if getattr(args, 'time_budget', None) is not None:
+            utils.Error('`--adaptive-precision` cannot be used with `--time-budget`.')
+        if args.max_iterations < args.iterations:
+            utils.Error('`--max-iterations` must not be less than `--iterations`.')
+        adaptive_precision = args.adaptive_precision
+        adaptive_max_iterations = args.max_iterations
+
+    if getattr(args, 'jobs', 1) != 1:
+        if args.jobs < 1:
+            utils.Error('`--jobs` must be positive.')
+        if args.target or args.cpuset:
+            utils.Error('`--jobs` is only valid on host, without `--cpuset`.')
+        if getattr(args, 'time_budget', None) is not None:
+            utils.Error('`--jobs` cannot be used with `--time-budget`.')
+        utils.CheckDependencies(['taskset'])
+
+    if getattr(args, 'ab', None) is not None:
+        for option in ['jvm_matrix', 'adaptive_precision', 'time_budget']:
+            if getattr(args, option, None) is not None:
+                utils.Error('`--ab` cannot be used with `--%s`.' % option.replace('_', '-'))
+        if getattr(args, 'jobs', 1) != 1:
+            utils.Error('`--ab` cannot be used with `--jobs`.')
+        if args.no_auto_calibrate:
+            utils.Error('`--ab` requires auto-calibration.')
+        ab_builds = OrderedDict()
+        for label, build in zip(['A', 'B'], args.ab):
+            if not os.path.isfile(build):
+                utils.Error('The build %s does not exist.' % build)
+            ab_builds[label] = os.path.abspath(build)
+        seed = args.ab_seed if args.ab_seed is not None else random.randrange(2 ** 32)
+        ab_metadata['builds'] = OrderedDict(ab_builds)
+        ab_metadata['seed'] = seed
+
+    if getattr(args, 'jvm_matrix', None) is not None:
+        if args.target:
+            utils.Error('`--jvm-matrix` is only valid on host.')
+        jvm_matrix = ReadJvmMatrix(args.jvm_matrix)
+
     if args.target:
         utils.CheckDependencies(['adb'])
 
-    BuildBenchmarks(args.target)
+    # On host, the benchmarks of the A/B builds are listed from A and the tree is not built.
+    if ab_builds and not args.target:
+        host_classpath = ab_builds['A']
+        # The runs are started from the build directory, which may not exist yet.
+        utils.ensure_dir(utils.dir_build_java_classes)
+    else:
+        BuildBenchmarks(args.target)
 
     remote_apk = None
-    if args.target:
+    if args.target and ab_builds:
+        DeleteAppInDalvikCache(args.target_copy_path, args.target)
+        ab_builds = PushABBuilds(ab_builds, args.target_copy_path, args.target)
+    elif args.target:
         DeleteAppInDalvikCache(args.target_copy_path, args.target)
         apk = os.path.join(utils.dir_build, 'bench.apk')
         apk_name = os.path.basename(apk)
@@ -250,26 +734,70 @@ def GetBenchmarkResults(args):
 
     benchmarks = utils.FilterList(benchmarks, args.filter, args.filter_out)
 
-    rc = RunBenchs(remote_apk,
-                   benchmarks,
-                   args.target,
-                   not args.no_auto_calibrate,
-                   args.iterations,
-                   args.mode,
-                   args.compiler_mode,
-                   args.android_root,
-                   args.cpuset)
+    if time_budget_history is not None:
+        # The budget starts when the benchmarks are built and ready to run.
+        time_budget_end = time.time() + args.time_budget
+        time_budget_runs_left = len(benchmarks) * args.iterations * \
+                                (len(jvm_matrix) if jvm_matrix else 1)
+
+    if ab_builds:
+        rc = RunBenchsAB(benchmarks,
+                         args.target,
+                         not args.no_auto_calibrate,
+                         args.iterations,
+                         args.mode,
+                         args.compiler_mode,
+                         args.android_root,
+                         args.cpuset,
+                         ab_metadata['seed'])
+    elif getattr(args, 'jobs', 1) > 1:
+        rc = RunBenchsInParallel(benchmarks,
+                                 args.jobs,
+                                 not args.no_auto_calibrate,
+                                 args.iterations,
+                                 args.mode,
+                                 args.compiler_mode,
+                                 args.android_root)
+    else:
+        rc = RunBenchs(remote_apk,
+                       benchmarks,
+                       args.target,
+                       not args.no_auto_calibrate,
+                       args.iterations,
+                       args.mode,
+                       args.compiler_mode,
+                       args.android_root,
+                       args.cpuset)
 
     if rc:
         utils.Error("The benchmarks did *not* run successfully. (rc = %d)" % rc, rc)
 
-    res = OrderedDict(sorted(result.items()))
+    if ab_builds:
+        res = OrderedDict((label, OrderedDict(sorted(result[label].items())))
+                          for label in ab_builds if label in result)
+    elif jvm_matrix:
+        # Keep the configurations in the order of the matrix.
+        res = OrderedDict((name, OrderedDict(sorted(result[name].items())))
+                          for name in jvm_matrix if name in result)
+    else:
+        res = OrderedDict(sorted(result.items()))
+    metadata = OrderedDict()
+    if adaptive_metadata:
+        metadata['adaptive'] = OrderedDict(sorted(adaptive_metadata.items()))
+    if ab_metadata:
+        metadata['ab'] = ab_metadata
+    if metadata:
+        res[utils.metadata_label] = metadata
     return res
 
 def GetAndPrintBenchmarkResults(args):
     results = GetBenchmarkResults(args)
-    utils.PrintData(results)
-    unflattened_results = utils.Unflatten(results)
+    printed_results = utils.StripMetadata(results)
+    if not printed_results:
+        utils.Warning('No benchmark results.')
+        return results
+    utils.PrintData(printed_results)
+    unflattened_results = utils.Unflatten(printed_results)
     utils_stats.ComputeAndPrintGeomeanWithRelativeDiff(unflattened_results)
     print('')
     return results
@@ -284,9 +812,10 @@ if __name__ == "__main__":
     # Transform the dictionary into a list of lists.
     output_filename = args.output_csv
     utils.ensure_dir(os.path.dirname(output_filename))
+    # The results of a JVM matrix are named `<configuration>/<benchmark>`.
     data = []
-    for bench in result:
-        data += [[bench] + result[bench]]
+    for bench, values in utils.Flatten(utils.StripMetadata(result)).items():
+        data += [[bench.lstrip('/')] + values]
     with open(output_filename, 'w') as output_file:
         writer = csv.writer(output_file, delimiter=',')
         writer.writerows(data)
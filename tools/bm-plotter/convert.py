@@ -45,7 +45,7 @@ if __name__ == "__main__":
     for json_file in args.json_files:
         with open(json_file, 'r') as result_file:
             data = json.load(result_file, object_pairs_hook=OrderedDict)
-            data = utils.Flatten(data)
+            data = utils.Flatten(utils.StripMetadata(data))
             for bench in data:
                 for value in data[bench]:
                     print(','.join(['column', json_file, bench, str(value)]))
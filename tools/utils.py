@@ -48,6 +48,9 @@ compilation_statistics_label = 'compilation statistics'
 compilation_times_label = 'compilation times'
 memory_stats_label = 'memory statistics'
 oat_size_label = 'oat size'
+# The key of the information about how results were collected, e.g. why the adaptive
+# sampling stopped. It is not a result and is ignored when results are printed or compared.
+metadata_label = '__metadata__'
 adb_default_target_string = '<default>'
 adb_default_target_copy_path = '/data/local/tmp'
 default_android_root = None
@@ -394,6 +397,12 @@ def Filter(data, filters, filters_out):
 
     return res
 
+# Return a copy of the data without the metadata entries at any level.
+def StripMetadata(data):
+    if not IsDictionary(data):
+        return data
+    return OrderedDict((k, StripMetadata(v)) for k, v in data.items() if k != metadata_label)
+
 def UnflattenHelper(res, key_list, value):
     while key_list:
         key = key_list.pop(0)
@@ -13,6 +13,7 @@
 # limitations under the License.
 
 import math
+import random
 import statistics
 import warnings
 
@@ -29,6 +30,12 @@ except:
                   "won't be reported. You will see `nan` in the appropriate "
                   "fields.")
 
+try:
+    import numpy
+except ImportError:
+    # NumPy only makes the bootstrap faster. Warn when it is used instead of on import.
+    numpy = None
+
 from functools import reduce
 
 import utils_print
@@ -64,6 +71,34 @@ def CalcMAD(nums, median):
     mad = statistics.median(nums)
     return mad
 
+# Return the distribution-free confidence interval of the median given by order statistics
+# of the values, or `None` if there are too few values to reach the confidence (fewer than
+# 6 values for 95%).
+def CalcMedianConfidenceInterval(nums, confidence=0.95):
+    n = len(nums)
+    values = sorted(nums)
+    # The median is between the j-th smallest and the j-th largest values with the
+    # probability that a binomial(n, 1/2) variable is between j and n - j.
+    tail = 0.0
+    j = 0
+    for k in range(n // 2):
+        p_k = math.comb(n, k) / 2 ** n
+        if 2 * (tail + p_k) > 1 - confidence:
+            break
+        tail += p_k
+        j = k + 1
+    if j == 0:
+        return None
+    return values[j - 1], values[n - j]
+
+# Return the width of the confidence interval of the median in % of the median, or `inf` if
+# there are too few values.
+def CalcMedianConfidenceIntervalWidth(nums, confidence=0.95):
+    interval = CalcMedianConfidenceInterval(nums, confidence)
+    if interval is None:
+        return float('inf')
+    return GetRatio(interval[1] - interval[0], statistics.median(nums))
+
 def ComputeStats(nums):
         m = min(nums)
         M = max(nums)
@@ -94,6 +129,76 @@ def ComputeStatsTests(list1, list2, filter_warnings=False):
         warnings.simplefilter("default")
     return wilcoxon_p, ttest_p
 
+# Return a random generator for the bootstrap functions, vectorised with NumPy if available.
+def MakeBootstrapGenerator(seed):
+    if numpy is not None:
+        return numpy.random.default_rng(seed)
+    warnings.warn("You don't have NumPy installed, the bootstrap is computed without "
+                  "vectorisation and is slower.")
+    return random.Random(seed)
+
+# Return `resamples` bootstrap estimates of the ratio of the median of `list2` to the median
+# of `list1`. The two lists are resampled with replacement independently, or with the same
+# indices if `paired`, for samples of the two lists taken in pairs.
+def BootstrapMedianRatios(list1, list2, resamples, generator, paired=False):
+    paired = paired and len(list1) == len(list2)
+    if numpy is not None:
+        medians = []
+        indices = None
+        for nums in (list1, list2):
+            values = numpy.asarray(nums, dtype=float)
+            if indices is None or not paired:
+                indices = generator.integers(0, len(values), size=(resamples, len(values)))
+            medians.append(numpy.median(values[indices], axis=1))
+        with numpy.errstate(divide='ignore', invalid='ignore'):
+            return medians[1] / medians[0]
+    ratios = []
+    for _ in range(resamples):
+        if paired:
+            indices = [generator.randrange(len(list1)) for _ in range(len(list1))]
+            median1 = statistics.median([list1[i] for i in indices])
+            median2 = statistics.median([list2[i] for i in indices])
+        else:
+            median1 = statistics.median(generator.choices(list1, k=len(list1)))
+            median2 = statistics.median(generator.choices(list2, k=len(list2)))
+        ratios.append(median2 / median1 if median1 else float('inf'))
+    return ratios
+
+# Return the bootstrap estimates of the geomean of ratios from the bootstrap estimates of
+# each ratio, all of the same length.
+def BootstrapGeomeanRatios(ratios_list):
+    if numpy is not None:
+        with numpy.errstate(divide='ignore', invalid='ignore'):
+            return numpy.exp(numpy.mean(numpy.log(numpy.vstack(ratios_list)), axis=0))
+    return [CalcGeomean([ratios[i] for ratios in ratios_list])
+            for i in range(len(ratios_list[0]))]
+
+# Return the bounds of the percentile interval of the bootstrap estimates holding the
+# `confidence` fraction of them.
+def CalcBootstrapInterval(estimates, confidence=0.95):
+    tail = (1 - confidence) / 2 * 100
+    if numpy is not None:
+        low, high = numpy.percentile(estimates, [tail, 100 - tail])
+        return float(low), float(high)
+    values = sorted(estimates)
+    def Percentile(p):
+        # Interpolate linearly between the closest ranks, as `numpy.percentile` does.
+        rank = (len(values) - 1) * p / 100
+        lower = math.floor(rank)
+        upper = min(lower + 1, len(values) - 1)
+        return values[lower] + (values[upper] - values[lower]) * (rank - lower)
+    return Percentile(tail), Percentile(100 - tail)
+
+# Return the verdict about a ratio of results, where a higher result is worse, from its
+# confidence interval: 'regression' or 'improvement' when the whole interval is beyond the
+# threshold, 'no change' otherwise.
+def GetRatioVerdict(low, high, threshold=0.0):
+    if low > 1 + threshold:
+        return 'regression'
+    if high < 1 - threshold:
+        return 'improvement'
+    return 'no change'
+
 def ComputeGeomeanHelper(data, res, current_key, compute_leaf_geomean):
     if isinstance(data, dict) or isinstance(data, OrderedDict):
         means = []